@@ -27,88 +27,61 @@ package com.nextcloud.talk.activities;
 import android.Manifest;
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
-import android.content.BroadcastReceiver;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
-import android.content.res.Configuration;
-import android.content.res.Resources;
+import android.content.ServiceConnection;
 import android.os.Bundle;
+import android.os.IBinder;
 import android.os.Parcelable;
+import android.os.Process;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 import android.text.TextUtils;
 import android.util.Log;
-import android.util.TypedValue;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.view.Window;
 import android.view.WindowManager;
 import android.widget.ImageButton;
 import android.widget.ImageView;
-import android.widget.LinearLayout;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
 
-import com.bluelinelabs.logansquare.LoganSquare;
-import com.evernote.android.job.JobRequest;
-import com.evernote.android.job.util.Device;
+import com.nextcloud.talk.BuildConfig;
 import com.nextcloud.talk.R;
-import com.nextcloud.talk.api.NcApi;
-import com.nextcloud.talk.api.helpers.api.ApiHelper;
-import com.nextcloud.talk.api.models.json.call.CallOverall;
-import com.nextcloud.talk.api.models.json.generic.GenericOverall;
-import com.nextcloud.talk.api.models.json.signaling.DataChannelMessage;
-import com.nextcloud.talk.api.models.json.signaling.NCIceCandidate;
-import com.nextcloud.talk.api.models.json.signaling.NCMessagePayload;
-import com.nextcloud.talk.api.models.json.signaling.NCMessageWrapper;
-import com.nextcloud.talk.api.models.json.signaling.NCSignalingMessage;
-import com.nextcloud.talk.api.models.json.signaling.Signaling;
-import com.nextcloud.talk.api.models.json.signaling.SignalingOverall;
-import com.nextcloud.talk.api.models.json.signaling.settings.IceServer;
-import com.nextcloud.talk.api.models.json.signaling.settings.SignalingSettingsOverall;
 import com.nextcloud.talk.application.NextcloudTalkApplication;
 import com.nextcloud.talk.events.MediaStreamEvent;
 import com.nextcloud.talk.events.PeerConnectionEvent;
-import com.nextcloud.talk.events.SessionDescriptionSendEvent;
+import com.nextcloud.talk.events.PeerStatsEvent;
 import com.nextcloud.talk.persistence.entities.UserEntity;
-import com.nextcloud.talk.webrtc.MagicAudioManager;
+import com.nextcloud.talk.services.CallService;
+import com.nextcloud.talk.utils.bundle.BundleKeys;
+import com.nextcloud.talk.webrtc.ActiveSpeakerDetector;
+import com.nextcloud.talk.webrtc.CallGridLayout;
 import com.nextcloud.talk.webrtc.MagicPeerConnectionWrapper;
-import com.nextcloud.talk.webrtc.MagicWebRTCUtils;
+import com.nextcloud.talk.webrtc.RemoteRendererPool;
+import com.nextcloud.talk.webrtc.TileVisibilityTracker;
+import com.nextcloud.talk.webrtc.WebRtcEngine;
+import com.nextcloud.talk.webrtc.stats.PeerStatsSnapshot;
+import com.nextcloud.talk.webrtc.stats.RenderCpuMeter;
 
-import org.apache.commons.lang3.StringEscapeUtils;
 import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
 import org.greenrobot.eventbus.ThreadMode;
 import org.parceler.Parcels;
-import org.webrtc.AudioSource;
-import org.webrtc.AudioTrack;
-import org.webrtc.Camera1Enumerator;
-import org.webrtc.Camera2Enumerator;
-import org.webrtc.CameraEnumerator;
-import org.webrtc.CameraVideoCapturer;
 import org.webrtc.EglBase;
-import org.webrtc.IceCandidate;
-import org.webrtc.Logging;
-import org.webrtc.MediaConstraints;
 import org.webrtc.MediaStream;
-import org.webrtc.PeerConnection;
-import org.webrtc.PeerConnectionFactory;
 import org.webrtc.RendererCommon;
-import org.webrtc.SessionDescription;
 import org.webrtc.SurfaceViewRenderer;
-import org.webrtc.VideoCapturer;
 import org.webrtc.VideoRenderer;
-import org.webrtc.VideoSource;
 import org.webrtc.VideoTrack;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 
@@ -116,15 +89,18 @@ import autodagger.AutoInjector;
 import butterknife.BindView;
 import butterknife.ButterKnife;
 import butterknife.OnClick;
+import butterknife.OnLongClick;
 import io.reactivex.Observer;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
-import io.reactivex.functions.BooleanSupplier;
-import io.reactivex.schedulers.Schedulers;
 import me.zhanghai.android.effortlesspermissions.EffortlessPermissions;
 import me.zhanghai.android.effortlesspermissions.OpenAppDetailsDialogFragment;
 import pub.devrel.easypermissions.AfterPermissionGranted;
 
+/**
+ * Draws a call that is kept by {@link CallService}. The activity can come and go, by a configuration
+ * change or by being backgrounded, without touching the call itself. Only leaving the activity ends it.
+ */
 @AutoInjector(NextcloudTalkApplication.class)
 public class CallActivity extends AppCompatActivity {
     private static final String TAG = "CallActivity";
@@ -140,7 +116,7 @@ public class CallActivity extends AppCompatActivity {
     @BindView(R.id.relative_layout)
     RelativeLayout relativeLayout;
     @BindView(R.id.remote_renderers_layout)
-    LinearLayout remoteRenderersLayout;
+    CallGridLayout remoteRenderersLayout;
 
     @BindView(R.id.call_controls)
     RelativeLayout callControls;
@@ -150,40 +126,51 @@ public class CallActivity extends AppCompatActivity {
     ImageButton cameraControlButton;
     @BindView(R.id.call_control_switch_camera)
     ImageButton cameraSwitchButton;
+    @BindView(R.id.call_stats_text_view)
+    TextView callStatsTextView;
 
-    @Inject
-    NcApi ncApi;
     @Inject
     EventBus eventBus;
-    PeerConnectionFactory peerConnectionFactory;
-    MediaConstraints audioConstraints;
-    MediaConstraints videoConstraints;
-    MediaConstraints sdpConstraints;
-    MagicAudioManager audioManager;
-    VideoSource videoSource;
-    VideoTrack localVideoTrack;
-    AudioSource audioSource;
-    AudioTrack localAudioTrack;
-    VideoCapturer videoCapturer;
+    @Inject
+    WebRtcEngine webRtcEngine;
     VideoRenderer localRenderer;
     EglBase rootEglBase;
-    boolean leavingCall = false;
-    BooleanSupplier booleanSupplier = () -> leavingCall;
-    Disposable signalingDisposable;
-    Disposable pingDisposable;
-    List<PeerConnection.IceServer> iceServers;
-    private CameraEnumerator cameraEnumerator;
     private String roomToken;
     private UserEntity userEntity;
-    private String callSession;
-    private VideoCapturer videoCapturerAndroid;
-    private MediaStream localMediaStream;
-    private String credentials;
-    private List<MagicPeerConnectionWrapper> magicPeerConnectionWrapperList = new ArrayList<>();
+    private CallService callService;
+    private Disposable webRtcEngineDisposable;
+    private long callOpenedAt;
+    private boolean webRtcEngineWasWarm;
+    private boolean webRtcEngineReady;
+    private boolean callShown;
+    private final Map<String, PeerStatsSnapshot> latestPeerStats = new ConcurrentHashMap<>();
+    // only touched on the UI thread
+    private final Map<String, RemoteRendererPool.Tile> remoteTiles = new HashMap<>();
+    private RemoteRendererPool remoteRendererPool;
+    private final ActiveSpeakerDetector activeSpeakerDetector =
+            new ActiveSpeakerDetector(ActiveSpeakerDetector.DEFAULT_MAX_RENDERED);
+    private final TileVisibilityTracker tileVisibilityTracker = new TileVisibilityTracker();
+    private final RenderCpuMeter renderCpuMeter = new RenderCpuMeter();
+    private ViewTreeObserver.OnGlobalLayoutListener tileLayoutListener;
+    private boolean activityStarted;
 
     private boolean videoOn = true;
+    private boolean audioOnly;
     private boolean audioOn = true;
 
+    private final ServiceConnection callServiceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            callService = ((CallService.CallBinder) service).getService();
+            showCallIfReady();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            callService = null;
+        }
+    };
+
     private static int getSystemUiVisibility() {
         int flags = View.SYSTEM_UI_FLAG_HIDE_NAVIGATION | View.SYSTEM_UI_FLAG_FULLSCREEN;
         flags |= View.SYSTEM_UI_FLAG_IMMERSIVE_STICKY;
@@ -194,6 +181,8 @@ public class CallActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         NextcloudTalkApplication.getSharedApplication().getComponentApplication().inject(this);
+        callOpenedAt = SystemClock.elapsedRealtime();
+        webRtcEngineWasWarm = webRtcEngine.isInitialized();
 
         requestWindowFeature(Window.FEATURE_NO_TITLE);
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_FULLSCREEN |
@@ -207,145 +196,113 @@ public class CallActivity extends AppCompatActivity {
 
         roomToken = getIntent().getExtras().getString("roomToken", "");
         userEntity = Parcels.unwrap((Parcelable) getIntent().getExtras().get("userEntity"));
-        callSession = "0";
-
-        credentials = ApiHelper.getCredentials(userEntity.getUsername(), userEntity.getToken());
-        initViews();
+        audioOnly = getIntent().getExtras().getBoolean(BundleKeys.KEY_AUDIO_ONLY, false);
 
-        checkPermissions();
+        tileVisibilityTracker.setCover(callControls);
+        tileLayoutListener = this::applyTileRendering;
+        remoteRenderersLayout.getViewTreeObserver().addOnGlobalLayoutListener(tileLayoutListener);
+        remoteRenderersLayout.setOnTileSizeChangedListener(this::onTileSizeChanged);
 
-    }
+        // started as well as bound, so the call outlives this activity
+        Intent callServiceIntent = new Intent(this, CallService.class);
+        startService(callServiceIntent);
+        bindService(callServiceIntent, callServiceConnection, Context.BIND_AUTO_CREATE);
 
-    private void toggleMedia(boolean enable, boolean video) {
-        String message;
-        if (video) {
-            message = "videoOff";
-            if (enable) {
-                message = "videoOn";
-                startVideoCapture();
-            } else {
-                try {
-                    videoCapturer.stopCapture();
-                } catch (InterruptedException e) {
-                    Log.d(TAG, "Failed to stop capturing video while sensor is near the ear");
-                }
-            }
-
-            localMediaStream.videoTracks.get(0).setEnabled(enable);
-
-            if (enable) {
-                pipVideoView.setVisibility(View.VISIBLE);
-            } else {
-                pipVideoView.setVisibility(View.INVISIBLE);
-            }
-        } else {
-            message = "audioOff";
-            if (enable) {
-                message = "audioOn";
-            }
-
-            localMediaStream.audioTracks.get(0).setEnabled(enable);
-        }
+        checkPermissions();
 
-        for (int i = 0; i < magicPeerConnectionWrapperList.size(); i++) {
-            magicPeerConnectionWrapperList.get(i).sendChannelData(new DataChannelMessage(message));
-        }
     }
 
     @OnClick(R.id.call_control_microphone)
     public void onMicrophoneClick() {
-        audioOn = !audioOn;
-
-        if (audioOn) {
-            microphoneControlButton.setImageResource(R.drawable.ic_mic_white_24px);
-        } else {
-            microphoneControlButton.setImageResource(R.drawable.ic_mic_off_white_24px);
+        if (callService == null) {
+            return;
         }
 
-        toggleMedia(audioOn, false);
+        audioOn = !audioOn;
+        updateMicrophoneControl();
+        callService.setAudioEnabled(audioOn);
     }
 
     @OnClick(R.id.call_control_hangup)
     public void onHangupClick() {
-        hangup(false);
+        if (callService != null) {
+            callService.hangup();
+        }
         finish();
     }
 
     @OnClick(R.id.call_control_camera)
     public void onCameraClick() {
-        videoOn = !videoOn;
-
-        if (videoOn) {
-            cameraControlButton.setImageResource(R.drawable.ic_videocam_white_24px);
-        } else {
-            cameraControlButton.setImageResource(R.drawable.ic_videocam_off_white_24px);
+        if (audioOnly || callService == null) {
+            return;
         }
 
-        toggleMedia(videoOn, true);
+        videoOn = !videoOn;
+        updateCameraControl();
+        pipVideoView.setVisibility(videoOn ? View.VISIBLE : View.INVISIBLE);
+        callService.setVideoEnabled(videoOn);
     }
 
-
-    @OnClick(R.id.call_control_switch_camera)
-    public void switchCamera() {
-        CameraVideoCapturer cameraVideoCapturer = (CameraVideoCapturer) videoCapturer;
-        cameraVideoCapturer.switchCamera(null);
+    @OnLongClick(R.id.call_control_camera)
+    public boolean onCameraLongClick() {
+        switchToAudioOnly();
+        return true;
     }
 
-    private void createCameraEnumerator() {
-        if (Camera2Enumerator.isSupported(this)) {
-            cameraEnumerator = new Camera2Enumerator(this);
-        } else {
-            cameraEnumerator = new Camera1Enumerator(false);
+    /**
+     * Drops video for the rest of the call, see {@link CallService#switchToAudioOnly()}.
+     */
+    private void switchToAudioOnly() {
+        if (audioOnly || callService == null) {
+            return;
         }
-    }
-
-    private VideoCapturer createVideoCapturer() {
-        videoCapturer = createCameraCapturer(cameraEnumerator);
-        return videoCapturer;
-    }
-
-    private VideoCapturer createCameraCapturer(CameraEnumerator enumerator) {
-        final String[] deviceNames = enumerator.getDeviceNames();
 
-        // First, try to find front facing camera
-        Logging.d(TAG, "Looking for front facing cameras.");
-        for (String deviceName : deviceNames) {
-            if (enumerator.isFrontFacing(deviceName)) {
-                Logging.d(TAG, "Creating front facing camera capturer.");
-                VideoCapturer videoCapturer = enumerator.createCapturer(deviceName, null);
+        // the local track is gone afterwards
+        removeLocalRenderer();
+        callService.switchToAudioOnly();
+        audioOnly = true;
+        videoOn = false;
+        updateAudioOnlyControls();
 
-                if (videoCapturer != null) {
-                    return videoCapturer;
-                }
-            }
+        pipVideoView.setVisibility(View.INVISIBLE);
+        for (String sessionId : new ArrayList<>(remoteTiles.keySet())) {
+            removeMediaStream(sessionId);
         }
+    }
 
-        // Front facing camera not found, try something else
-        Logging.d(TAG, "Looking for other cameras.");
-        for (String deviceName : deviceNames) {
-            if (!enumerator.isFrontFacing(deviceName)) {
-                Logging.d(TAG, "Creating other camera capturer.");
-                VideoCapturer videoCapturer = enumerator.createCapturer(deviceName, null);
-
-                if (videoCapturer != null) {
-                    return videoCapturer;
-                }
-            }
+    private void updateMicrophoneControl() {
+        if (audioOn) {
+            microphoneControlButton.setImageResource(R.drawable.ic_mic_white_24px);
+        } else {
+            microphoneControlButton.setImageResource(R.drawable.ic_mic_off_white_24px);
         }
-
-        return null;
     }
 
-    public void initViews() {
-        createCameraEnumerator();
+    private void updateCameraControl() {
+        if (videoOn) {
+            cameraControlButton.setImageResource(R.drawable.ic_videocam_white_24px);
+        } else {
+            cameraControlButton.setImageResource(R.drawable.ic_videocam_off_white_24px);
+        }
+    }
 
-        if (cameraEnumerator.getDeviceNames().length < 2) {
+    private void updateAudioOnlyControls() {
+        if (audioOnly) {
+            cameraControlButton.setImageResource(R.drawable.ic_videocam_off_white_24px);
             cameraSwitchButton.setVisibility(View.GONE);
         }
+    }
 
+    @OnClick(R.id.call_control_switch_camera)
+    public void switchCamera() {
+        if (callService != null) {
+            callService.switchCamera();
+        }
+    }
+
+    private void initRenderers() {
         // setting this to true because it's not shown by default
         pipVideoView.setMirror(true);
-        rootEglBase = EglBase.create();
         pipVideoView.init(rootEglBase.getEglBaseContext(), null);
         pipVideoView.setZOrderMediaOverlay(true);
         pipVideoView.setEnableHardwareScaler(true);
@@ -376,265 +333,26 @@ public class CallActivity extends AppCompatActivity {
     }
 
     private void initializeEverything() {
-        //Initialize PeerConnectionFactory globals.
-        PeerConnectionFactory.InitializationOptions initializationOptions = PeerConnectionFactory.InitializationOptions
-                .builder(this)
-                .setEnableVideoHwAcceleration(true)
-                .createInitializationOptions();
-        PeerConnectionFactory.initialize(initializationOptions);
-
-        //Create a new PeerConnectionFactory instance.
-        PeerConnectionFactory.Options options = new PeerConnectionFactory.Options();
-        peerConnectionFactory = new PeerConnectionFactory(options);
-
-        //Now create a VideoCapturer instance. Callback methods are there if you want to do something! Duh!
-        videoCapturerAndroid = createVideoCapturer();
-
-        //Create MediaConstraints - Will be useful for specifying video and audio constraints.
-        audioConstraints = new MediaConstraints();
-        videoConstraints = new MediaConstraints();
-
-        //Create a VideoSource instance
-        videoSource = peerConnectionFactory.createVideoSource(videoCapturerAndroid);
-        localVideoTrack = peerConnectionFactory.createVideoTrack("NCv0", videoSource);
-
-        //create an AudioSource instance
-        audioSource = peerConnectionFactory.createAudioSource(audioConstraints);
-        localAudioTrack = peerConnectionFactory.createAudioTrack("NCa0", audioSource);
-
-        localMediaStream = peerConnectionFactory.createLocalMediaStream("NCMS");
-        localMediaStream.addTrack(localAudioTrack);
-        localMediaStream.addTrack(localVideoTrack);
-
-        // Create and audio manager that will take care of audio routing,
-        // audio modes, audio device enumeration etc.
-        audioManager = MagicAudioManager.create(getApplicationContext());
-        // Store existing audio settings and change audio mode to
-        // MODE_IN_COMMUNICATION for best possible VoIP performance.
-        Log.d(TAG, "Starting the audio manager...");
-        audioManager.start(new MagicAudioManager.AudioManagerEvents() {
-            @Override
-            public void onAudioDeviceChanged(MagicAudioManager.AudioDevice selectedAudioDevice,
-                                             Set<MagicAudioManager.AudioDevice> availableAudioDevices) {
-                onAudioManagerDevicesChanged(selectedAudioDevice, availableAudioDevices);
-            }
-        });
-
-        startVideoCapture();
-
-        //create a videoRenderer based on SurfaceViewRenderer instance
-        localRenderer = new VideoRenderer(fullScreenVideoView);
-        // And finally, with our VideoRenderer ready, we
-        // can add our renderer to the VideoTrack.
-        localVideoTrack.addRenderer(localRenderer);
-
-        iceServers = new ArrayList<>();
-
-        //create sdpConstraints
-        sdpConstraints = new MediaConstraints();
-        sdpConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveAudio", "true"));
-        sdpConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveVideo", "true"));
-        sdpConstraints.optional.add(new MediaConstraints.KeyValuePair("internalSctpDataChannels", "true"));
-        sdpConstraints.optional.add(new MediaConstraints.KeyValuePair("DtlsSrtpKeyAgreement", "true"));
-
-        animateCallControls(false, 5000);
-        startPullingSignalingMessages(false);
-        registerNetworkReceiver();
-    }
-
-
-    @OnClick({R.id.full_screen_surface_view, R.id.remote_renderers_layout})
-    public void showCallControls() {
-        if (callControls.getVisibility() != View.VISIBLE) {
-            animateCallControls(true, 0);
-        }
-    }
-
-    public void startPullingSignalingMessages(boolean restart) {
-
-        if (restart) {
-            dispose(null);
-            hangupNetworkCalls();
-        }
-
-        leavingCall = false;
-
-        ncApi.getSignalingSettings(ApiHelper.getCredentials(userEntity.getUsername(), userEntity.getToken()),
-                ApiHelper.getUrlForSignalingSettings(userEntity.getBaseUrl()))
-                .subscribeOn(Schedulers.newThread())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(new Observer<SignalingSettingsOverall>() {
-                    @Override
-                    public void onSubscribe(Disposable d) {
-
-                    }
-
-                    @Override
-                    public void onNext(SignalingSettingsOverall signalingSettingsOverall) {
-                        IceServer iceServer;
-                        for (int i = 0; i < signalingSettingsOverall.getOcs().getSettings().getStunServers().size();
-                             i++) {
-                            iceServer = signalingSettingsOverall.getOcs().getSettings().getStunServers().get(i);
-                            if (TextUtils.isEmpty(iceServer.getUsername()) || TextUtils.isEmpty(iceServer
-                                    .getCredential())) {
-                                iceServers.add(new PeerConnection.IceServer(iceServer.getUrl()));
-                            } else {
-                                iceServers.add(new PeerConnection.IceServer(iceServer.getUrl(),
-                                        iceServer.getUsername(), iceServer.getCredential()));
-                            }
-                        }
-
-                        for (int i = 0; i < signalingSettingsOverall.getOcs().getSettings().getTurnServers().size();
-                             i++) {
-                            iceServer = signalingSettingsOverall.getOcs().getSettings().getTurnServers().get(i);
-                            for (int j = 0; j < iceServer.getUrls().size(); j++) {
-                                if (TextUtils.isEmpty(iceServer.getUsername()) || TextUtils.isEmpty(iceServer
-                                        .getCredential())) {
-                                    iceServers.add(new PeerConnection.IceServer(iceServer.getUrls().get(j)));
-                                } else {
-                                    iceServers.add(new PeerConnection.IceServer(iceServer.getUrls().get(j),
-                                            iceServer.getUsername(), iceServer.getCredential()));
-                                }
-                            }
-                        }
-
-
-                        joinRoomAndCall();
-
-                    }
-
-                    @Override
-                    public void onError(Throwable e) {
-                    }
-
-                    @Override
-                    public void onComplete() {
-
-                    }
-                });
-    }
-
-    private void startVideoCapture() {
-        if (videoCapturer != null) {
-            Resources r = getResources();
-            int px = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 120, r.getDisplayMetrics());
-            videoCapturerAndroid.startCapture(px, px, 30);
-        }
-    }
-
-    private void joinRoomAndCall() {
-        ncApi.joinRoom(credentials, ApiHelper.getUrlForRoom(userEntity.getBaseUrl(), roomToken))
-                .subscribeOn(Schedulers.newThread())
+        // the factory and friends are shared by all calls, usually they are ready by now
+        webRtcEngine.getReadyEngine()
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(new Observer<CallOverall>() {
+                .subscribe(new Observer<WebRtcEngine>() {
                     @Override
                     public void onSubscribe(Disposable d) {
-
+                        webRtcEngineDisposable = d;
                     }
 
                     @Override
-                    public void onNext(CallOverall callOverall) {
-                        ncApi.joinCall(credentials,
-                                ApiHelper.getUrlForCall(userEntity.getBaseUrl(), roomToken))
-                                .subscribeOn(Schedulers.newThread())
-                                .observeOn(AndroidSchedulers.mainThread())
-                                .subscribe(new Observer<GenericOverall>() {
-                                    @Override
-                                    public void onSubscribe(Disposable d) {
-
-                                    }
-
-                                    @Override
-                                    public void onNext(GenericOverall genericOverall) {
-                                        callSession = callOverall.getOcs().getData().getSessionId();
-
-                                        // start pinging the call
-                                        ncApi.pingCall(ApiHelper.getCredentials(userEntity.getUsername(), userEntity.getToken()),
-                                                ApiHelper.getUrlForCallPing(userEntity.getBaseUrl(), roomToken))
-                                                .subscribeOn(Schedulers.newThread())
-                                                .observeOn(AndroidSchedulers.mainThread())
-                                                .repeatWhen(completed -> completed.delay(5000, TimeUnit.MILLISECONDS))
-                                                .repeatUntil(booleanSupplier)
-                                                .retry(3)
-                                                .subscribe(new Observer<GenericOverall>() {
-                                                    @Override
-                                                    public void onSubscribe(Disposable d) {
-                                                        pingDisposable = d;
-                                                    }
-
-                                                    @Override
-                                                    public void onNext(GenericOverall genericOverall) {
-
-                                                    }
-
-                                                    @Override
-                                                    public void onError(Throwable e) {
-                                                        dispose(pingDisposable);
-                                                    }
-
-                                                    @Override
-                                                    public void onComplete() {
-                                                        dispose(pingDisposable);
-                                                    }
-                                                });
-
-                                        // Start pulling signaling messages
-                                        ncApi.pullSignalingMessages(ApiHelper.getCredentials(userEntity.getUsername(),
-                                                userEntity.getToken()), ApiHelper.getUrlForSignaling(userEntity.getBaseUrl()))
-                                                .subscribeOn(Schedulers.newThread())
-                                                .observeOn(AndroidSchedulers.mainThread())
-                                                .repeatWhen(observable -> observable.delay(1500,
-                                                        TimeUnit.MILLISECONDS))
-                                                .repeatUntil(booleanSupplier)
-                                                .retry(3)
-                                                .subscribe(new Observer<SignalingOverall>() {
-                                                    @Override
-                                                    public void onSubscribe(Disposable d) {
-                                                        signalingDisposable = d;
-                                                    }
-
-                                                    @Override
-                                                    public void onNext(SignalingOverall signalingOverall) {
-                                                        if (signalingOverall.getOcs().getSignalings() != null) {
-                                                            for (int i = 0; i < signalingOverall.getOcs().getSignalings().size(); i++) {
-                                                                try {
-                                                                    receivedSignalingMessage(signalingOverall.getOcs().getSignalings().get(i));
-                                                                } catch (IOException e) {
-                                                                    e.printStackTrace();
-                                                                }
-                                                            }
-                                                        }
-                                                    }
-
-                                                    @Override
-                                                    public void onError(Throwable e) {
-                                                        dispose(signalingDisposable);
-                                                    }
-
-                                                    @Override
-                                                    public void onComplete() {
-                                                        dispose(signalingDisposable);
-                                                    }
-                                                });
-
-
-                                    }
-
-                                    @Override
-                                    public void onError(Throwable e) {
-
-                                    }
-
-                                    @Override
-                                    public void onComplete() {
-
-                                    }
-                                });
+                    public void onNext(WebRtcEngine engine) {
+                        Log.d(TAG, "WebRTC engine ready " + (SystemClock.elapsedRealtime() - callOpenedAt)
+                                + " ms after opening the call, was warm: " + webRtcEngineWasWarm);
+                        webRtcEngineReady = true;
+                        showCallIfReady();
                     }
 
                     @Override
                     public void onError(Throwable e) {
-
+                        Log.d(TAG, "Failed to initialize the WebRTC engine");
                     }
 
                     @Override
@@ -644,235 +362,97 @@ public class CallActivity extends AppCompatActivity {
                 });
     }
 
-    private void receivedSignalingMessage(Signaling signaling) throws IOException {
-        String messageType = signaling.getType();
-
-        if (leavingCall) {
+    /**
+     * Starts the call in the service, or picks up the one it is already running, as soon as both the
+     * service is bound and the engine is ready.
+     */
+    private void showCallIfReady() {
+        if (callShown || callService == null || !webRtcEngineReady) {
             return;
         }
 
-        if ("usersInRoom".equals(messageType)) {
-            processUsersInRoom((List<HashMap<String, String>>) signaling.getMessageWrapper());
-        } else if ("message".equals(messageType)) {
-            NCSignalingMessage ncSignalingMessage = LoganSquare.parse(signaling.getMessageWrapper().toString(),
-                    NCSignalingMessage.class);
-            if (ncSignalingMessage.getRoomType().equals("video")) {
-                MagicPeerConnectionWrapper magicPeerConnectionWrapper = alwaysGetPeerConnectionWrapperForSessionId
-                        (ncSignalingMessage.getFrom());
-
-                String type = null;
-                if (ncSignalingMessage.getPayload() != null && ncSignalingMessage.getPayload().getType() !=
-                        null) {
-                    type = ncSignalingMessage.getPayload().getType();
-                } else if (ncSignalingMessage.getType() != null) {
-                    type = ncSignalingMessage.getType();
-                }
-
-                if (type != null) {
-                    switch (type) {
-                        case "offer":
-                        case "answer":
-                            magicPeerConnectionWrapper.setNick(ncSignalingMessage.getPayload().getNick());
-                            String sessionDescriptionStringWithPreferredCodec = MagicWebRTCUtils.preferCodec
-                                    (ncSignalingMessage.getPayload().getSdp(),
-                                            "VP8", false);
-
-                            SessionDescription sessionDescriptionWithPreferredCodec = new SessionDescription(
-                                    SessionDescription.Type.fromCanonicalForm(type),
-                                    sessionDescriptionStringWithPreferredCodec);
-
-                            magicPeerConnectionWrapper.getPeerConnection().setRemoteDescription(magicPeerConnectionWrapper
-                                    .getMagicSdpObserver(), sessionDescriptionWithPreferredCodec);
-                            break;
-                        case "candidate":
-                            NCIceCandidate ncIceCandidate = ncSignalingMessage.getPayload().getIceCandidate();
-                            IceCandidate iceCandidate = new IceCandidate(ncIceCandidate.getSdpMid(),
-                                    ncIceCandidate.getSdpMLineIndex(), ncIceCandidate.getCandidate());
-                            magicPeerConnectionWrapper.addCandidate(iceCandidate);
-                            break;
-                        case "endOfCandidates":
-                            magicPeerConnectionWrapper.drainIceCandidates();
-                            break;
-                        default:
-                            break;
-                    }
-                }
-            } else {
-                Log.d(TAG, "Something went very very wrong");
-            }
-        } else {
-            Log.d(TAG, "Something went very very wrong");
-        }
-    }
-
-    // This method is called when the audio manager reports audio device change,
-    // e.g. from wired headset to speakerphone.
-    private void onAudioManagerDevicesChanged(
-            final MagicAudioManager.AudioDevice device, final Set<MagicAudioManager.AudioDevice> availableDevices) {
-        Log.d(TAG, "onAudioManagerDevicesChanged: " + availableDevices + ", "
-                + "selected: " + device);
-    }
-
-    private void processUsersInRoom(List<HashMap<String, String>> users) {
-        List<String> newSessions = new ArrayList<>();
-        Set<String> oldSesssions = new HashSet<>();
-
-        for (HashMap<String, String> participant : users) {
-            if (!participant.get("sessionId").equals(callSession)) {
-                Object inCallObject = participant.get("inCall");
-                if ((boolean) inCallObject) {
-                    newSessions.add(participant.get("sessionId"));
-                } else {
-                    oldSesssions.add(participant.get("sessionId"));
-                }
-            }
+        callShown = true;
+        if (!callService.isInCall(roomToken)) {
+            callService.startCall(userEntity, roomToken, audioOnly);
         }
+        callService.onActivityAttached();
 
-
-        for (MagicPeerConnectionWrapper magicPeerConnectionWrapper : magicPeerConnectionWrapperList) {
-            oldSesssions.add(magicPeerConnectionWrapper.getSessionId());
+        audioOnly = callService.isAudioOnly();
+        audioOn = callService.isAudioOn();
+        videoOn = callService.isVideoOn();
+        updateMicrophoneControl();
+        updateCameraControl();
+        if (!callService.canSwitchCamera()) {
+            cameraSwitchButton.setVisibility(View.GONE);
         }
 
-        // Calculate sessions that left the call
-        oldSesssions.removeAll(newSessions);
-
-        // Calculate sessions that join the call
-        newSessions.removeAll(oldSesssions);
-
-        if (leavingCall) {
-            return;
+        rootEglBase = webRtcEngine.getEglBase();
+        if (remoteRendererPool == null) {
+            remoteRendererPool = new RemoteRendererPool(getLayoutInflater(), rootEglBase.getEglBaseContext(),
+                    RemoteRendererPool.DEFAULT_MAX_POOLED);
         }
 
-        for (String sessionId : newSessions) {
-            alwaysGetPeerConnectionWrapperForSessionId(sessionId);
+        if (audioOnly) {
+            updateAudioOnlyControls();
+        } else {
+            initRenderers();
+
+            VideoTrack localVideoTrack = callService.getLocalVideoTrack();
+            if (localVideoTrack != null) {
+                //create a videoRenderer based on SurfaceViewRenderer instance
+                localRenderer = new VideoRenderer(fullScreenVideoView);
+                // And finally, with our VideoRenderer ready, we
+                // can add our renderer to the VideoTrack.
+                localVideoTrack.addRenderer(localRenderer);
+            }
         }
 
-        for (String sessionId : oldSesssions) {
-            endPeerConnection(sessionId);
-        }
+        syncRemoteStreams();
+        animateCallControls(false, 5000);
     }
 
-
-    private void deleteMagicPeerConnection(MagicPeerConnectionWrapper magicPeerConnectionWrapper) {
-        if (magicPeerConnectionWrapper.getPeerConnection() != null) {
-            magicPeerConnectionWrapper.getPeerConnection().close();
+    /**
+     * Catches up with the remote streams the service got while nobody was listening.
+     */
+    private void syncRemoteStreams() {
+        if (!callShown || callService == null) {
+            return;
         }
-        magicPeerConnectionWrapperList.remove(magicPeerConnectionWrapper);
-    }
 
-    private MagicPeerConnectionWrapper alwaysGetPeerConnectionWrapperForSessionId(String sessionId) {
-        MagicPeerConnectionWrapper magicPeerConnectionWrapper;
-        if ((magicPeerConnectionWrapper = getPeerConnectionWrapperForSessionId(sessionId)) != null) {
-            return magicPeerConnectionWrapper;
-        } else {
-            magicPeerConnectionWrapper = new MagicPeerConnectionWrapper(peerConnectionFactory,
-                    iceServers, sdpConstraints, sessionId, callSession, localMediaStream);
-            magicPeerConnectionWrapperList.add(magicPeerConnectionWrapper);
-            return magicPeerConnectionWrapper;
+        Map<String, MediaStream> remoteStreams = callService.getRemoteStreams();
+        for (String sessionId : new ArrayList<>(remoteTiles.keySet())) {
+            if (!remoteStreams.containsKey(sessionId)) {
+                removeMediaStream(sessionId);
+            }
         }
-    }
 
-    private MagicPeerConnectionWrapper getPeerConnectionWrapperForSessionId(String sessionId) {
-        for (MagicPeerConnectionWrapper magicPeerConnectionWrapper : magicPeerConnectionWrapperList) {
-            if (magicPeerConnectionWrapper.getSessionId().equals(sessionId)) {
-                return magicPeerConnectionWrapper;
+        for (Map.Entry<String, MediaStream> entry : remoteStreams.entrySet()) {
+            if (!remoteTiles.containsKey(entry.getKey())) {
+                gotRemoteStream(entry.getValue(), entry.getKey());
             }
         }
-        return null;
     }
 
-    private void hangup(boolean dueToNetworkChange) {
-
-        leavingCall = true;
-        dispose(null);
-
-        for (int i = 0; i < magicPeerConnectionWrapperList.size(); i++) {
-            endPeerConnection(magicPeerConnectionWrapperList.get(i).getSessionId());
-
-        }
-
-        if (videoCapturer != null) {
-            videoCapturer.dispose();
-        }
-
-
-        if (localMediaStream != null) {
-            if (localMediaStream.videoTracks != null && localMediaStream.videoTracks.size() > 0) {
-                localMediaStream.removeTrack(localMediaStream.videoTracks.get(0));
-            }
-
-            if (localMediaStream.audioTracks != null && localMediaStream.audioTracks.size() > 0) {
-                localMediaStream.removeTrack(localMediaStream.audioTracks.get(0));
-            }
+    private void removeLocalRenderer() {
+        VideoTrack localVideoTrack = callService == null ? null : callService.getLocalVideoTrack();
+        if (localVideoTrack != null && localRenderer != null) {
+            localVideoTrack.removeRenderer(localRenderer);
         }
-
-        localVideoTrack = null;
-        localAudioTrack = null;
         localRenderer = null;
-        localMediaStream = null;
-
-        if (videoCapturer != null) {
-            videoCapturer.dispose();
-            videoCapturer = null;
-        }
-
-        pipVideoView.release();
+    }
 
-        if (!dueToNetworkChange) {
-            hangupNetworkCalls();
+    @OnClick({R.id.full_screen_surface_view, R.id.remote_renderers_layout})
+    public void showCallControls() {
+        if (callControls.getVisibility() != View.VISIBLE) {
+            animateCallControls(true, 0);
         }
     }
 
-    private void hangupNetworkCalls() {
-        String credentials = ApiHelper.getCredentials(userEntity.getUsername(), userEntity.getToken());
-        ncApi.leaveCall(credentials, ApiHelper.getUrlForCall(userEntity.getBaseUrl(), roomToken))
-                .subscribeOn(Schedulers.newThread())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(new Observer<GenericOverall>() {
-                    @Override
-                    public void onSubscribe(Disposable d) {
-
-                    }
-
-                    @Override
-                    public void onNext(GenericOverall genericOverall) {
-                        ncApi.leaveRoom(credentials, ApiHelper.getUrlForRoom(userEntity.getBaseUrl(), roomToken))
-                                .subscribeOn(Schedulers.newThread())
-                                .observeOn(AndroidSchedulers.mainThread())
-                                .subscribe(new Observer<GenericOverall>() {
-                                    @Override
-                                    public void onSubscribe(Disposable d) {
-
-                                    }
-
-                                    @Override
-                                    public void onNext(GenericOverall genericOverall) {
-
-                                    }
-
-                                    @Override
-                                    public void onError(Throwable e) {
-
-                                    }
-
-                                    @Override
-                                    public void onComplete() {
-
-                                    }
-                                });
-
-                    }
-
-                    @Override
-                    public void onError(Throwable e) {
-
-                    }
-
-                    @Override
-                    public void onComplete() {
-
-                    }
-                });
+    private void onTileSizeChanged(int tileWidth, int tileHeight) {
+        Log.d(TAG, "Remote tiles are now " + remoteRenderersLayout.getTileGrid());
+        if (callService != null) {
+            callService.setLocalTileSize(tileWidth, tileHeight);
+        }
     }
 
     private void gotNick(String sessionId, String nick) {
@@ -902,12 +482,22 @@ public class CallActivity extends AppCompatActivity {
     }
 
     private void gotRemoteStream(MediaStream stream, String session) {
-        if (fullScreenVideoView != null) {
+        if (audioOnly) {
+            // remote audio plays without a view
+            return;
+        }
+
+        VideoTrack localVideoTrack = callService.getLocalVideoTrack();
+        if (fullScreenVideoView.getParent() != null) {
             remoteRenderersLayout.setVisibility(View.VISIBLE);
-            pipVideoView.setVisibility(View.VISIBLE);
-            localVideoTrack.removeRenderer(localRenderer);
-            localRenderer = new VideoRenderer(pipVideoView);
-            localVideoTrack.addRenderer(localRenderer);
+            pipVideoView.setVisibility(videoOn ? View.VISIBLE : View.INVISIBLE);
+            if (localVideoTrack != null) {
+                if (localRenderer != null) {
+                    localVideoTrack.removeRenderer(localRenderer);
+                }
+                localRenderer = new VideoRenderer(pipVideoView);
+                localVideoTrack.addRenderer(localRenderer);
+            }
             relativeLayout.removeView(fullScreenVideoView);
         }
 
@@ -916,22 +506,21 @@ public class CallActivity extends AppCompatActivity {
         if (stream.videoTracks.size() == 1) {
             VideoTrack videoTrack = stream.videoTracks.get(0);
             try {
-                RelativeLayout relativeLayout = (RelativeLayout)
-                        getLayoutInflater().inflate(R.layout.surface_renderer, remoteRenderersLayout,
-                                false);
-                relativeLayout.setTag(session);
-                SurfaceViewRenderer surfaceViewRenderer = relativeLayout.findViewById(R.id
-                        .surface_view);
-                surfaceViewRenderer.setMirror(false);
-                surfaceViewRenderer.init(rootEglBase.getEglBaseContext(), null);
-                surfaceViewRenderer.setZOrderMediaOverlay(true);
-                surfaceViewRenderer.setEnableHardwareScaler(true);
-                surfaceViewRenderer.setScalingType(RendererCommon.ScalingType.SCALE_ASPECT_FIT);
-                VideoRenderer remoteRenderer = new VideoRenderer(surfaceViewRenderer);
-                videoTrack.addRenderer(remoteRenderer);
-                remoteRenderersLayout.addView(relativeLayout);
-                relativeLayout.invalidate();
-                gotNick(session, getPeerConnectionWrapperForSessionId(session).getNick());
+                RemoteRendererPool.Tile tile = remoteRendererPool.acquire(remoteRenderersLayout, session, videoTrack);
+                remoteTiles.put(session, tile);
+                remoteRenderersLayout.addView(tile.getView());
+                tile.getView().invalidate();
+                activeSpeakerDetector.addParticipant(session);
+                activeSpeakerDetector.update(SystemClock.elapsedRealtime());
+                applyTileRendering();
+
+                // the peer may have told us all of this before this activity was around
+                MagicPeerConnectionWrapper magicPeerConnectionWrapper = callService.getPeerConnectionWrapper(session);
+                if (magicPeerConnectionWrapper != null) {
+                    gotNick(session, magicPeerConnectionWrapper.getNick());
+                    gotAudioOrVideoChange(true, session, magicPeerConnectionWrapper.isRemoteVideoOn());
+                    gotAudioOrVideoChange(false, session, magicPeerConnectionWrapper.isRemoteAudioOn());
+                }
             } catch (Exception e) {
                 Log.d(TAG, "Failed to create a new video view");
             }
@@ -940,59 +529,75 @@ public class CallActivity extends AppCompatActivity {
 
     @Override
     public void onDestroy() {
-        hangup(false);
-        super.onDestroy();
-    }
-
-    private void dispose(@Nullable Disposable disposable) {
-        if (disposable != null && !disposable.isDisposed()) {
-            disposable.dispose();
-        } else if (disposable == null) {
-
-            if (pingDisposable != null && !pingDisposable.isDisposed()) {
-                pingDisposable.dispose();
-                pingDisposable = null;
-            }
+        if (tileLayoutListener != null) {
+            remoteRenderersLayout.getViewTreeObserver().removeOnGlobalLayoutListener(tileLayoutListener);
+        }
+        if (webRtcEngineDisposable != null && !webRtcEngineDisposable.isDisposed()) {
+            webRtcEngineDisposable.dispose();
+        }
 
-            if (signalingDisposable != null && !signalingDisposable.isDisposed()) {
-                signalingDisposable.dispose();
-                signalingDisposable = null;
+        removeLocalRenderer();
+        for (String sessionId : new ArrayList<>(remoteTiles.keySet())) {
+            removeMediaStream(sessionId);
+        }
+        if (remoteRendererPool != null) {
+            remoteRendererPool.clear();
+        }
+        pipVideoView.release();
+        fullScreenVideoView.release();
+        Log.d(TAG, "Switched rendered speakers " + activeSpeakerDetector.getSwitches() + " times");
+        Log.d(TAG, renderCpuMeter.getReport(SystemClock.elapsedRealtime(), Process.getElapsedCpuTime()));
+
+        // a recreated activity picks the call up again, only leaving it ends the call
+        if (isFinishing()) {
+            if (callService != null) {
+                callService.hangup();
+            } else {
+                stopService(new Intent(this, CallService.class));
             }
         }
+        unbindService(callServiceConnection);
+        callService = null;
+        super.onDestroy();
     }
 
     @Override
     public void onStart() {
         super.onStart();
         eventBus.register(this);
-        startVideoCapture();
+        if (callService != null) {
+            callService.resumeVideoCapture();
+        }
+        syncRemoteStreams();
+        activityStarted = true;
+        applyTileRendering();
     }
 
     @Override
     public void onStop() {
         super.onStop();
         eventBus.unregister(this);
-        if (videoCapturer != null) {
-            try {
-                videoCapturer.stopCapture();
-            } catch (InterruptedException e) {
-                Log.e(TAG, "Failed to stop the capturing process");
-            }
+        activityStarted = false;
+        applyTileRendering();
+        if (callService != null) {
+            callService.pauseVideoCapture();
         }
     }
 
     @Subscribe(threadMode = ThreadMode.BACKGROUND)
     public void onMessageEvent(PeerConnectionEvent peerConnectionEvent) {
-        if (peerConnectionEvent.getPeerConnectionEventType().equals(PeerConnectionEvent.PeerConnectionEventType
-                .CLOSE_PEER)) {
-            endPeerConnection(peerConnectionEvent.getSessionId());
-        } else if (peerConnectionEvent.getPeerConnectionEventType().equals(PeerConnectionEvent
+        if (peerConnectionEvent.getPeerConnectionEventType().equals(PeerConnectionEvent
                 .PeerConnectionEventType.SENSOR_FAR) ||
                 peerConnectionEvent.getPeerConnectionEventType().equals(PeerConnectionEvent
                         .PeerConnectionEventType.SENSOR_NEAR)) {
+            // the service takes care of the camera itself
             boolean enableVideo = peerConnectionEvent.getPeerConnectionEventType().equals(PeerConnectionEvent
                     .PeerConnectionEventType.SENSOR_FAR);
-            toggleMedia(enableVideo, true);
+            runOnUiThread(() -> {
+                if (videoOn) {
+                    pipVideoView.setVisibility(enableVideo ? View.VISIBLE : View.INVISIBLE);
+                }
+            });
         } else if (peerConnectionEvent.getPeerConnectionEventType().equals(PeerConnectionEvent
                 .PeerConnectionEventType.NICK_CHANGE)) {
             runOnUiThread(() -> gotNick(peerConnectionEvent.getSessionId(), peerConnectionEvent.getNick()));
@@ -1007,28 +612,51 @@ public class CallActivity extends AppCompatActivity {
         }
     }
 
-    private void endPeerConnection(String sessionId) {
-        MagicPeerConnectionWrapper magicPeerConnectionWrapper;
-        if ((magicPeerConnectionWrapper = getPeerConnectionWrapperForSessionId(sessionId)) != null) {
-            runOnUiThread(() -> removeMediaStream(sessionId));
-            deleteMagicPeerConnection(magicPeerConnectionWrapper);
-        }
-    }
-
     private void removeMediaStream(String sessionId) {
-        if (remoteRenderersLayout.getChildCount() > 0) {
-            RelativeLayout relativeLayout = remoteRenderersLayout.findViewWithTag(sessionId);
-            if (relativeLayout != null) {
-                SurfaceViewRenderer surfaceViewRenderer = relativeLayout.findViewById(R.id.surface_view);
-                surfaceViewRenderer.release();
-                remoteRenderersLayout.removeView(relativeLayout);
-                remoteRenderersLayout.invalidate();
+        latestPeerStats.remove(sessionId);
+        RemoteRendererPool.Tile tile = remoteTiles.remove(sessionId);
+        if (tile != null) {
+            remoteRenderersLayout.removeView(tile.getView());
+            remoteRenderersLayout.invalidate();
+            remoteRendererPool.recycle(tile);
+
+            // somebody waiting for a slot can take the free one
+            activeSpeakerDetector.removeParticipant(sessionId);
+            activeSpeakerDetector.update(SystemClock.elapsedRealtime());
+            applyTileRendering();
+        }
+    }
+
+    /**
+     * Renders the tiles of the active speakers as long as they can be seen, everything else is paused.
+     */
+    private void applyTileRendering() {
+        int renderedTiles = 0;
+        int pausedTiles = 0;
+        for (Map.Entry<String, RemoteRendererPool.Tile> entry : remoteTiles.entrySet()) {
+            RemoteRendererPool.Tile tile = entry.getValue();
+            boolean wanted = activeSpeakerDetector.isRendered(entry.getKey());
+            boolean render = wanted && activityStarted && tileVisibilityTracker.isVisible(tile.getView());
+            tile.setVideoRendered(render);
+
+            if (render) {
+                renderedTiles++;
+            } else if (wanted) {
+                pausedTiles++;
             }
         }
+
+        renderCpuMeter.onTilesChanged(renderedTiles, pausedTiles, SystemClock.elapsedRealtime(),
+                Process.getElapsedCpuTime());
     }
 
     @Subscribe(threadMode = ThreadMode.MAIN)
     public void onMessageEvent(MediaStreamEvent mediaStreamEvent) {
+        if (!callShown) {
+            // picked up by syncRemoteStreams once the call is shown
+            return;
+        }
+
         if (mediaStreamEvent.getMediaStream() != null) {
             gotRemoteStream(mediaStreamEvent.getMediaStream(), mediaStreamEvent.getSession());
         } else {
@@ -1037,92 +665,46 @@ public class CallActivity extends AppCompatActivity {
     }
 
     @Subscribe(threadMode = ThreadMode.BACKGROUND)
-    public void onMessageEvent(SessionDescriptionSendEvent sessionDescriptionSend) throws IOException {
-        String credentials = ApiHelper.getCredentials(userEntity.getUsername(), userEntity.getToken());
-        NCMessageWrapper ncMessageWrapper = new NCMessageWrapper();
-        ncMessageWrapper.setEv("message");
-        ncMessageWrapper.setSessionId(callSession);
-        NCSignalingMessage ncSignalingMessage = new NCSignalingMessage();
-        ncSignalingMessage.setTo(sessionDescriptionSend.getPeerId());
-        ncSignalingMessage.setRoomType("video");
-        ncSignalingMessage.setType(sessionDescriptionSend.getType());
-        NCMessagePayload ncMessagePayload = new NCMessagePayload();
-        ncMessagePayload.setType(sessionDescriptionSend.getType());
-
-        if (!"candidate".equals(sessionDescriptionSend.getType())) {
-            ncMessagePayload.setSdp(sessionDescriptionSend.getSessionDescription().description);
-            ncMessagePayload.setNick(userEntity.getDisplayName());
-        } else {
-            ncMessagePayload.setIceCandidate(sessionDescriptionSend.getNcIceCandidate());
+    public void onMessageEvent(PeerStatsEvent peerStatsEvent) {
+        PeerStatsSnapshot peerStatsSnapshot = peerStatsEvent.getPeerStatsSnapshot();
+        CallService callService = this.callService;
+        if (callService == null || callService.getPeerConnectionWrapper(peerStatsSnapshot.getSessionId()) == null) {
+            return;
         }
 
-
-        // Set all we need
-        ncSignalingMessage.setPayload(ncMessagePayload);
-        ncMessageWrapper.setSignalingMessage(ncSignalingMessage);
-
-
-        StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append("{");
-        stringBuilder.append("\"fn\":\"");
-        stringBuilder.append(StringEscapeUtils.escapeJson(LoganSquare.serialize(ncMessageWrapper
-                .getSignalingMessage()))).append("\"");
-        stringBuilder.append(",");
-        stringBuilder.append("\"sessionId\":");
-        stringBuilder.append("\"").append(StringEscapeUtils.escapeJson(callSession)).append("\"");
-        stringBuilder.append(",");
-        stringBuilder.append("\"ev\":\"message\"");
-        stringBuilder.append("}");
-
-        List<String> strings = new ArrayList<>();
-        String stringToSend = stringBuilder.toString();
-        strings.add(stringToSend);
-
-        ncApi.sendSignalingMessages(credentials, ApiHelper.getUrlForSignaling(userEntity.getBaseUrl()),
-                strings.toString())
-                .retry(3)
-                .subscribeOn(Schedulers.newThread())
-                .subscribe(new Observer<SignalingOverall>() {
-                    @Override
-                    public void onSubscribe(Disposable d) {
-
-                    }
-
-                    @Override
-                    public void onNext(SignalingOverall signalingOverall) {
-                        if (signalingOverall.getOcs().getSignalings() != null) {
-                            for (int i = 0; i < signalingOverall.getOcs().getSignalings().size(); i++) {
-                                try {
-                                    receivedSignalingMessage(signalingOverall.getOcs().getSignalings().get(i));
-                                } catch (IOException e) {
-                                    e.printStackTrace();
-                                }
-                            }
-                        }
-                    }
-
-                    @Override
-                    public void onError(Throwable e) {
-                    }
-
-                    @Override
-                    public void onComplete() {
-
-                    }
-                });
+        latestPeerStats.put(peerStatsSnapshot.getSessionId(), peerStatsSnapshot);
+        long now = SystemClock.elapsedRealtime();
+        activeSpeakerDetector.onAudioLevel(peerStatsSnapshot.getSessionId(), peerStatsSnapshot.getAudioLevel(), now);
+        if (activeSpeakerDetector.update(now)) {
+            runOnUiThread(this::applyTileRendering);
+        }
+        if (BuildConfig.DEBUG) {
+            runOnUiThread(this::updateCallStatsView);
+        }
     }
 
-    @Override
-    public void onConfigurationChanged(Configuration newConfig) {
+    private void updateCallStatsView() {
+        if (callService == null) {
+            return;
+        }
+
+        StringBuilder stringBuilder = new StringBuilder("video: ").append(webRtcEngine.getVideoCodecPolicy());
+        if (remoteRendererPool != null) {
+            stringBuilder.append(", renderer pool hits: ").append(remoteRendererPool.getHits()).append('/')
+                    .append(remoteRendererPool.getHits() + remoteRendererPool.getMisses());
+        }
+        for (PeerStatsSnapshot peerStatsSnapshot : latestPeerStats.values()) {
+            MagicPeerConnectionWrapper magicPeerConnectionWrapper =
+                    callService.getPeerConnectionWrapper(peerStatsSnapshot.getSessionId());
+            String nick = magicPeerConnectionWrapper == null ? null : magicPeerConnectionWrapper.getNick();
 
-        // Checks the orientation of the screen
-        if (newConfig.orientation == Configuration.ORIENTATION_LANDSCAPE) {
-            remoteRenderersLayout.setOrientation(LinearLayout.HORIZONTAL);
-        } else if (newConfig.orientation == Configuration.ORIENTATION_PORTRAIT) {
-            remoteRenderersLayout.setOrientation(LinearLayout.VERTICAL);
+            stringBuilder.append('\n')
+                    .append(TextUtils.isEmpty(nick) ? peerStatsSnapshot.getSessionId() : nick)
+                    .append(": ").append(peerStatsSnapshot);
         }
 
-        super.onConfigurationChanged(newConfig);
+        callStatsTextView.setText(stringBuilder);
+        callStatsTextView.setVisibility(latestPeerStats.isEmpty() ? View.GONE : View.VISIBLE);
     }
 
     @Override
@@ -1134,25 +716,6 @@ public class CallActivity extends AppCompatActivity {
                 this);
     }
 
-    private void registerNetworkReceiver() {
-        IntentFilter intentFilter = new IntentFilter();
-        intentFilter.addAction("android.net.conn.CONNECTIVITY_CHANGE");
-        intentFilter.addAction("android.net.wifi.STATE_CHANGE");
-
-        BroadcastReceiver broadcastReceiver = new BroadcastReceiver() {
-            @Override
-            public void onReceive(Context context, Intent intent) {
-                if (!Device.getNetworkType(context).equals(JobRequest.NetworkType.ANY) && leavingCall) {
-                    startPullingSignalingMessages(true);
-                } else if (Device.getNetworkType(context).equals(JobRequest.NetworkType.ANY) && !leavingCall) {
-                    hangup(true);
-                }
-            }
-        };
-
-        this.registerReceiver(broadcastReceiver, intentFilter);
-    }
-
     private void animateCallControls(boolean show, long startDelay) {
         float alpha;
         long duration;
@@ -1181,6 +744,7 @@ public class CallActivity extends AppCompatActivity {
                                 callControls.setVisibility(View.VISIBLE);
                                 animateCallControls(false, 10000);
                             }
+                            applyTileRendering();
                         }
                     }
                 });
@@ -54,7 +54,7 @@ public class MenuItem extends AbstractFlexibleItem<MenuItem.MenuItemViewHolder>
         return false;
     }
 
-    private String getModel() {
+    public String getModel() {
         return title;
     }
 
@@ -0,0 +1,90 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.api.models.json.converters;
+
+import com.bluelinelabs.logansquare.JsonMapper;
+import com.bluelinelabs.logansquare.LoganSquare;
+import com.bluelinelabs.logansquare.typeconverters.TypeConverter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.nextcloud.talk.api.models.json.participants.Participant;
+import com.nextcloud.talk.api.models.json.signaling.NCSignalingMessage;
+import com.nextcloud.talk.api.models.json.signaling.SignalingData;
+
+import java.io.IOException;
+
+/**
+ * Decodes the "data" field of a signaling entry straight into typed objects while the response
+ * is being parsed. A "usersInRoom" entry carries an array of participants, a "message" entry carries
+ * the signaling message, which the server sends as a JSON encoded string.
+ */
+public class SignalingDataConverter implements TypeConverter<SignalingData> {
+    private static final JsonMapper<NCSignalingMessage> NC_SIGNALING_MESSAGE_MAPPER =
+            LoganSquare.mapperFor(NCSignalingMessage.class);
+    private static final JsonMapper<Participant> PARTICIPANT_MAPPER = LoganSquare.mapperFor(Participant.class);
+
+    @Override
+    public SignalingData parse(JsonParser jsonParser) throws IOException {
+        SignalingData signalingData = new SignalingData();
+        JsonToken jsonToken = jsonParser.getCurrentToken();
+
+        if (jsonToken == JsonToken.START_ARRAY) {
+            signalingData.setUsersInRoom(PARTICIPANT_MAPPER.parseList(jsonParser));
+        } else if (jsonToken == JsonToken.START_OBJECT) {
+            signalingData.setMessage(NC_SIGNALING_MESSAGE_MAPPER.parse(jsonParser));
+        } else if (jsonToken == JsonToken.VALUE_STRING) {
+            // parse the characters in place rather than copying them into a String first
+            JsonParser messageParser = LoganSquare.JSON_FACTORY.createParser(jsonParser.getTextCharacters(),
+                    jsonParser.getTextOffset(), jsonParser.getTextLength());
+            messageParser.nextToken();
+            signalingData.setMessage(NC_SIGNALING_MESSAGE_MAPPER.parse(messageParser));
+            messageParser.close();
+        } else {
+            jsonParser.skipChildren();
+        }
+
+        return signalingData;
+    }
+
+    @Override
+    public void serialize(SignalingData object, String fieldName, boolean writeFieldNameForObject,
+                          JsonGenerator jsonGenerator) throws IOException {
+        if (writeFieldNameForObject) {
+            jsonGenerator.writeFieldName(fieldName);
+        }
+
+        if (object == null) {
+            jsonGenerator.writeNull();
+        } else if (object.getUsersInRoom() != null) {
+            jsonGenerator.writeStartArray();
+            for (Participant participant : object.getUsersInRoom()) {
+                PARTICIPANT_MAPPER.serialize(participant, jsonGenerator, true);
+            }
+            jsonGenerator.writeEndArray();
+        } else if (object.getMessage() != null) {
+            jsonGenerator.writeString(NC_SIGNALING_MESSAGE_MAPPER.serialize(object.getMessage()));
+        } else {
+            jsonGenerator.writeNull();
+        }
+    }
+}
@@ -22,6 +22,7 @@ package com.nextcloud.talk.api.models.json.signaling;
 
 import com.bluelinelabs.logansquare.annotation.JsonField;
 import com.bluelinelabs.logansquare.annotation.JsonObject;
+import com.nextcloud.talk.api.models.json.converters.SignalingDataConverter;
 
 import lombok.Data;
 
@@ -34,7 +35,7 @@ import lombok.Data;
 public class Signaling {
     @JsonField(name = "type")
     String type;
-    //can be NCMessageWrapper or List<HashMap<String,String>>
-    @JsonField(name = "data")
-    Object messageWrapper;
+    // either a list of participants ("usersInRoom") or a signaling message ("message")
+    @JsonField(name = "data", typeConverter = SignalingDataConverter.class)
+    SignalingData signalingData;
 }
@@ -36,6 +36,7 @@ import com.nextcloud.talk.dagger.modules.BusModule;
 import com.nextcloud.talk.dagger.modules.ContextModule;
 import com.nextcloud.talk.dagger.modules.DatabaseModule;
 import com.nextcloud.talk.dagger.modules.RestModule;
+import com.nextcloud.talk.dagger.modules.WebRtcModule;
 import com.nextcloud.talk.jobs.AccountRemovalJob;
 import com.nextcloud.talk.jobs.PushRegistrationJob;
 import com.nextcloud.talk.jobs.creator.MagicJobCreator;
@@ -60,6 +61,7 @@ import autodagger.AutoInjector;
                 DatabaseModule.class,
                 RestModule.class,
                 UserModule.class,
+                WebRtcModule.class,
         }
 )
 
@@ -158,6 +160,7 @@ public class NextcloudTalkApplication extends MultiDexApplication {
                 .databaseModule(new DatabaseModule())
                 .restModule(new RestModule())
                 .userModule(new UserModule())
+                .webRtcModule(new WebRtcModule())
                 .build();
     }
 
@@ -62,6 +62,8 @@ import com.nextcloud.talk.events.MoreMenuClickEvent;
 import com.nextcloud.talk.persistence.entities.UserEntity;
 import com.nextcloud.talk.utils.bundle.BundleBuilder;
 import com.nextcloud.talk.utils.database.user.UserUtils;
+import com.nextcloud.talk.webrtc.IceServersCache;
+import com.nextcloud.talk.webrtc.WebRtcEngine;
 
 import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
@@ -99,6 +101,13 @@ public class CallsListController extends BaseController implements SearchView.On
 
     @Inject
     NcApi ncApi;
+
+    @Inject
+    IceServersCache iceServersCache;
+
+    @Inject
+    WebRtcEngine webRtcEngine;
+
     @BindView(R.id.recycler_view)
     RecyclerView recyclerView;
 
@@ -147,6 +156,12 @@ public class CallsListController extends BaseController implements SearchView.On
             }
         }
 
+        if (userEntity != null) {
+            // have the ICE servers and the WebRTC engine ready by the time a call is started
+            iceServersCache.prefetch(userEntity);
+            webRtcEngine.prewarm();
+        }
+
         adapter.addListener(this);
         prepareViews();
 
@@ -20,6 +20,7 @@
 
 package com.nextcloud.talk.controllers;
 
+import android.content.Intent;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v7.widget.DividerItemDecoration;
@@ -30,16 +31,23 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import com.nextcloud.talk.R;
+import com.nextcloud.talk.activities.CallActivity;
 import com.nextcloud.talk.adapters.items.MenuItem;
 import com.nextcloud.talk.api.models.json.rooms.Room;
 import com.nextcloud.talk.application.NextcloudTalkApplication;
 import com.nextcloud.talk.controllers.base.BaseController;
+import com.nextcloud.talk.persistence.entities.UserEntity;
+import com.nextcloud.talk.utils.bundle.BundleBuilder;
+import com.nextcloud.talk.utils.bundle.BundleKeys;
+import com.nextcloud.talk.utils.database.user.UserUtils;
 
 import org.parceler.Parcels;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.inject.Inject;
+
 import autodagger.AutoInjector;
 import butterknife.BindView;
 import eu.davidea.flexibleadapter.FlexibleAdapter;
@@ -50,6 +58,8 @@ import eu.davidea.flexibleadapter.items.AbstractFlexibleItem;
 public class RoomMenuController extends BaseController implements FlexibleAdapter.OnItemClickListener {
     @BindView(R.id.recycler_view)
     RecyclerView recyclerView;
+    @Inject
+    UserUtils userUtils;
     private Room room;
     private List<AbstractFlexibleItem> menuItems;
     private FlexibleAdapter<AbstractFlexibleItem> adapter;
@@ -95,6 +105,8 @@ public class RoomMenuController extends BaseController implements FlexibleAdapte
 
         menuItems.add(new MenuItem(getResources().getString(R.string.nc_what)));
 
+        menuItems.add(new MenuItem(getResources().getString(R.string.nc_join_audio_only)));
+
         menuItems.add(new MenuItem(getResources().getString(R.string.nc_leave)));
 
         if (room.isNameEditable()) {
@@ -120,10 +132,29 @@ public class RoomMenuController extends BaseController implements FlexibleAdapte
         }
     }
 
+    private void joinAudioOnly() {
+        UserEntity userEntity = userUtils.getCurrentUser();
+        if (userEntity == null) {
+            return;
+        }
+
+        Intent callIntent = new Intent(getActivity(), CallActivity.class);
+        BundleBuilder bundleBuilder = new BundleBuilder(new Bundle());
+        bundleBuilder.putString("roomToken", room.getToken());
+        bundleBuilder.putParcelable("userEntity", Parcels.wrap(userEntity));
+        bundleBuilder.putBoolean(BundleKeys.KEY_AUDIO_ONLY, true);
+        callIntent.putExtras(bundleBuilder.build());
+        startActivity(callIntent);
+    }
+
     @Override
     public boolean onItemClick(int position) {
         if (menuItems.size() > position && position != 0) {
             MenuItem menuItem = (MenuItem) menuItems.get(position);
+
+            if (getResources().getString(R.string.nc_join_audio_only).equals(menuItem.getModel())) {
+                joinAudioOnly();
+            }
         }
 
         return true;
@@ -32,6 +32,9 @@ import com.nextcloud.talk.application.NextcloudTalkApplication;
 import com.nextcloud.talk.utils.preferences.AppPreferences;
 import com.nextcloud.talk.utils.ssl.MagicTrustManager;
 import com.nextcloud.talk.utils.ssl.SSLSocketFactoryCompat;
+import com.nextcloud.talk.webrtc.signaling.LongPollingSignalingTransport;
+import com.nextcloud.talk.webrtc.signaling.SignalingTraceInterceptor;
+import com.nextcloud.talk.webrtc.signaling.SignalingTransport;
 
 import java.io.IOException;
 import java.net.CookieManager;
@@ -39,6 +42,7 @@ import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.util.concurrent.TimeUnit;
 
+import javax.inject.Named;
 import javax.inject.Singleton;
 
 import dagger.Module;
@@ -69,6 +73,25 @@ public class RestModule {
         return retrofit.create(NcApi.class);
     }
 
+    @Provides
+    @Singleton
+    @Named(SignalingTransport.NC_API_NAME)
+    NcApi provideSignalingNcApi(OkHttpClient httpClient) {
+        // the shared client gives up on a long poll before the server answers it
+        OkHttpClient signalingHttpClient = httpClient.newBuilder()
+                .readTimeout(LongPollingSignalingTransport.READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .build();
+
+        // calls block the thread they are subscribed on, which is always the signaling network scheduler
+        return new Retrofit.Builder()
+                .client(signalingHttpClient)
+                .baseUrl("https://nextcloud.com")
+                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+                .addConverterFactory(LoganSquareConverterFactory.create())
+                .build()
+                .create(NcApi.class);
+    }
+
     @Provides
     @Singleton
     Proxy provideProxy(AppPreferences appPreferences) {
@@ -125,12 +148,18 @@ public class RestModule {
         return new Cache(NextcloudTalkApplication.getSharedApplication().getCacheDir(), cacheSize);
     }
 
+    @Provides
+    @Singleton
+    SignalingTraceInterceptor provideSignalingTraceInterceptor() {
+        return new SignalingTraceInterceptor();
+    }
+
     @Provides
     @Singleton
     OkHttpClient provideHttpClient(Proxy proxy, AppPreferences appPreferences,
                                    MagicTrustManager magicTrustManager,
                                    SSLSocketFactoryCompat sslSocketFactoryCompat, Cache cache,
-                                   CookieManager cookieManager) {
+                                   CookieManager cookieManager, SignalingTraceInterceptor signalingTraceInterceptor) {
         OkHttpClient.Builder httpClient = new OkHttpClient.Builder();
 
         httpClient.connectTimeout(30, TimeUnit.SECONDS);
@@ -145,6 +174,7 @@ public class RestModule {
             loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
 
             httpClient.addInterceptor(loggingInterceptor);
+            httpClient.addInterceptor(signalingTraceInterceptor);
         }
 
         httpClient.sslSocketFactory(sslSocketFactoryCompat, magicTrustManager);
@@ -0,0 +1,74 @@
+/*
+ *
+ *   Nextcloud Talk application
+ *
+ *   @author Mario Danic
+ *   Copyright (C) 2017 Mario Danic (mario@lovelyhq.com)
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.nextcloud.talk.dagger.modules;
+
+import android.content.Context;
+
+import com.nextcloud.talk.api.NcApi;
+import com.nextcloud.talk.webrtc.IceServersCache;
+import com.nextcloud.talk.webrtc.SignalingExecutor;
+import com.nextcloud.talk.webrtc.WebRtcEngine;
+import com.nextcloud.talk.webrtc.signaling.SignalingTransport;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import dagger.Module;
+import dagger.Provides;
+import io.reactivex.Scheduler;
+
+@Module(includes = RestModule.class)
+public class WebRtcModule {
+
+    @Provides
+    @Singleton
+    SignalingExecutor provideSignalingExecutor() {
+        return new SignalingExecutor();
+    }
+
+    @Provides
+    @Singleton
+    @Named(SignalingExecutor.SCHEDULER_NAME)
+    Scheduler provideSignalingScheduler(SignalingExecutor signalingExecutor) {
+        return signalingExecutor.getScheduler();
+    }
+
+    @Provides
+    @Singleton
+    @Named(SignalingExecutor.NETWORK_SCHEDULER_NAME)
+    Scheduler provideSignalingNetworkScheduler(SignalingExecutor signalingExecutor) {
+        return signalingExecutor.getNetworkScheduler();
+    }
+
+    @Provides
+    @Singleton
+    IceServersCache provideIceServersCache(@Named(SignalingTransport.NC_API_NAME) NcApi ncApi,
+                                           @Named(SignalingExecutor.NETWORK_SCHEDULER_NAME) Scheduler scheduler) {
+        return new IceServersCache(ncApi, scheduler);
+    }
+
+    @Provides
+    @Singleton
+    WebRtcEngine provideWebRtcEngine(Context context,
+                                     @Named(SignalingExecutor.SCHEDULER_NAME) Scheduler scheduler) {
+        return new WebRtcEngine(context, scheduler);
+    }
+}
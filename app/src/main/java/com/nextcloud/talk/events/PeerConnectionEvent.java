@@ -40,6 +40,7 @@ public class PeerConnectionEvent {
     }
 
     public enum PeerConnectionEventType {
-        CLOSE_PEER, SENSOR_FAR, SENSOR_NEAR, NICK_CHANGE, AUDIO_CHANGE, VIDEO_CHANGE
+        CLOSE_PEER, SENSOR_FAR, SENSOR_NEAR, NICK_CHANGE, AUDIO_CHANGE, VIDEO_CHANGE, ICE_CONNECTED,
+        TILE_SIZE_CHANGE
     }
 }
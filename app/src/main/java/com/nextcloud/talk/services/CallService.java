@@ -0,0 +1,1247 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.services;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+import android.support.v4.app.NotificationCompat;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.bluelinelabs.logansquare.LoganSquare;
+import com.evernote.android.job.JobRequest;
+import com.evernote.android.job.util.Device;
+import com.nextcloud.talk.BuildConfig;
+import com.nextcloud.talk.R;
+import com.nextcloud.talk.activities.CallActivity;
+import com.nextcloud.talk.api.NcApi;
+import com.nextcloud.talk.api.helpers.api.ApiHelper;
+import com.nextcloud.talk.api.models.json.generic.GenericOverall;
+import com.nextcloud.talk.api.models.json.participants.Participant;
+import com.nextcloud.talk.api.models.json.signaling.NCIceCandidate;
+import com.nextcloud.talk.api.models.json.signaling.NCMessagePayload;
+import com.nextcloud.talk.api.models.json.signaling.NCMessageWrapper;
+import com.nextcloud.talk.api.models.json.signaling.NCSignalingMessage;
+import com.nextcloud.talk.api.models.json.signaling.Signaling;
+import com.nextcloud.talk.api.models.json.signaling.SignalingData;
+import com.nextcloud.talk.api.models.json.signaling.SignalingOverall;
+import com.nextcloud.talk.application.NextcloudTalkApplication;
+import com.nextcloud.talk.events.MediaStreamEvent;
+import com.nextcloud.talk.events.PeerConnectionEvent;
+import com.nextcloud.talk.events.PeerStatsEvent;
+import com.nextcloud.talk.events.SessionDescriptionSendEvent;
+import com.nextcloud.talk.persistence.entities.UserEntity;
+import com.nextcloud.talk.utils.bundle.BundleBuilder;
+import com.nextcloud.talk.utils.bundle.BundleKeys;
+import com.nextcloud.talk.webrtc.CallJoinPipeline;
+import com.nextcloud.talk.webrtc.CaptureFormatGovernor;
+import com.nextcloud.talk.webrtc.IceServersCache;
+import com.nextcloud.talk.webrtc.MagicAudioManager;
+import com.nextcloud.talk.webrtc.MagicPeerConnectionWrapper;
+import com.nextcloud.talk.webrtc.MagicWebRTCUtils;
+import com.nextcloud.talk.webrtc.PeerRegistry;
+import com.nextcloud.talk.webrtc.ReconnectionTracker;
+import com.nextcloud.talk.webrtc.SignalingExecutor;
+import com.nextcloud.talk.webrtc.WebRtcEngine;
+import com.nextcloud.talk.webrtc.sdp.MediaBandwidthProfile;
+import com.nextcloud.talk.webrtc.signaling.InboundSignalingQueue;
+import com.nextcloud.talk.webrtc.signaling.LongPollingSignalingTransport;
+import com.nextcloud.talk.webrtc.signaling.PollingSignalingTransport;
+import com.nextcloud.talk.webrtc.signaling.RosterState;
+import com.nextcloud.talk.webrtc.signaling.SignalingMessageBatcher;
+import com.nextcloud.talk.webrtc.signaling.SignalingTraceInterceptor;
+import com.nextcloud.talk.webrtc.signaling.SignalingTraceRecorder;
+import com.nextcloud.talk.webrtc.signaling.SignalingTransport;
+import com.nextcloud.talk.webrtc.stats.CallStatsSampler;
+import com.nextcloud.talk.webrtc.stats.StatsFileLog;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.greenrobot.eventbus.EventBus;
+import org.greenrobot.eventbus.Subscribe;
+import org.greenrobot.eventbus.ThreadMode;
+import org.parceler.Parcels;
+import org.webrtc.AudioTrack;
+import org.webrtc.Camera1Enumerator;
+import org.webrtc.Camera2Enumerator;
+import org.webrtc.CameraEnumerator;
+import org.webrtc.CameraVideoCapturer;
+import org.webrtc.IceCandidate;
+import org.webrtc.Logging;
+import org.webrtc.MediaConstraints;
+import org.webrtc.MediaStream;
+import org.webrtc.PeerConnection;
+import org.webrtc.SessionDescription;
+import org.webrtc.VideoCapturer;
+import org.webrtc.VideoSource;
+import org.webrtc.VideoTrack;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import autodagger.AutoInjector;
+import io.reactivex.Completable;
+import io.reactivex.Observer;
+import io.reactivex.Scheduler;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.BooleanSupplier;
+
+/**
+ * Owns a running call: the local media, the peer connections and the signaling loop. It is bound by
+ * {@link CallActivity}, which only draws the call, and runs in the foreground while the call lasts, so
+ * neither a recreated activity nor a backgrounded app ends the call.
+ */
+@AutoInjector(NextcloudTalkApplication.class)
+public class CallService extends Service {
+    private static final String TAG = "CallService";
+    private static final String NOTIFICATION_CHANNEL_ID = "calls";
+    private static final int NOTIFICATION_ID = 1;
+    // how long a call may try to recover in place before it is rejoined from scratch
+    private static final long RECONNECT_TIMEOUT_MS = 15000;
+
+    @Inject
+    @Named(SignalingTransport.NC_API_NAME)
+    NcApi signalingNcApi;
+    @Inject
+    EventBus eventBus;
+    @Inject
+    IceServersCache iceServersCache;
+    @Inject
+    SignalingExecutor signalingExecutor;
+    @Inject
+    WebRtcEngine webRtcEngine;
+    @Inject
+    SignalingTraceInterceptor signalingTraceInterceptor;
+    @Inject
+    @Named(SignalingExecutor.SCHEDULER_NAME)
+    Scheduler signalingScheduler;
+    @Inject
+    @Named(SignalingExecutor.NETWORK_SCHEDULER_NAME)
+    Scheduler networkScheduler;
+
+    private final IBinder binder = new CallBinder();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private MediaConstraints sdpConstraints;
+    private MagicAudioManager audioManager;
+    private VideoSource videoSource;
+    private VideoTrack localVideoTrack;
+    private AudioTrack localAudioTrack;
+    private VideoCapturer videoCapturer;
+    private CameraEnumerator cameraEnumerator;
+    private volatile boolean leavingCall = true;
+    private BooleanSupplier booleanSupplier = () -> leavingCall;
+    private Disposable signalingDisposable;
+    private Disposable pingDisposable;
+    private List<PeerConnection.IceServer> iceServers;
+    private String roomToken;
+    private UserEntity userEntity;
+    private String callSession;
+    private MediaStream localMediaStream;
+    private String credentials;
+    private final PeerRegistry peerRegistry = new PeerRegistry();
+    private final Map<String, MediaStream> remoteStreams = new ConcurrentHashMap<>();
+    private SignalingTransport signalingTransport;
+    private SignalingMessageBatcher signalingMessageBatcher;
+    private CallJoinPipeline callJoinPipeline;
+    private InboundSignalingQueue inboundSignalingQueue;
+    private final RosterState rosterState = new RosterState();
+    private SignalingTraceRecorder signalingTraceRecorder;
+    private long callStartedAt;
+    private final AtomicBoolean firstSessionDescriptionSent = new AtomicBoolean();
+    private CaptureFormatGovernor captureFormatGovernor;
+    private volatile boolean videoCapturing;
+    private volatile MediaBandwidthProfile mediaBandwidthProfile;
+    private CallStatsSampler callStatsSampler;
+    private StatsFileLog statsFileLog;
+    private volatile int localTileWidth;
+    private volatile int localTileHeight;
+    private final ReconnectionTracker reconnectionTracker = new ReconnectionTracker();
+    private Disposable reconnectTimeoutDisposable;
+    private BroadcastReceiver networkReceiver;
+    private String activeNetworkKey;
+
+    private boolean callActive;
+    private boolean audioOnly;
+    private boolean audioOn = true;
+    private boolean videoOn = true;
+    private int attachments;
+    private volatile boolean activityBound;
+
+    public class CallBinder extends Binder {
+        public CallService getService() {
+            return CallService.this;
+        }
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        NextcloudTalkApplication.getSharedApplication().getComponentApplication().inject(this);
+        eventBus.register(this);
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        return START_NOT_STICKY;
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        activityBound = true;
+        return binder;
+    }
+
+    @Override
+    public void onRebind(Intent intent) {
+        activityBound = true;
+    }
+
+    @Override
+    public boolean onUnbind(Intent intent) {
+        // the call carries on without an activity, e.g. while it is recreated, but nobody holds the phone
+        activityBound = false;
+        return true;
+    }
+
+    @Override
+    public void onTaskRemoved(Intent rootIntent) {
+        // the user swiped the app away, that is as good as hanging up
+        hangup();
+        super.onTaskRemoved(rootIntent);
+    }
+
+    @Override
+    public void onDestroy() {
+        if (callActive) {
+            hangup(false);
+        }
+        eventBus.unregister(this);
+        super.onDestroy();
+    }
+
+    public boolean isInCall(String roomToken) {
+        return callActive && TextUtils.equals(this.roomToken, roomToken);
+    }
+
+    /**
+     * Called whenever a {@link CallActivity} attaches to the call. Every attachment after the first one
+     * is an activity that was recreated, which used to cost a full rejoin.
+     */
+    public void onActivityAttached() {
+        attachments++;
+        if (attachments > 1) {
+            Log.d(TAG, "Kept the call across " + (attachments - 1) + " activity recreations");
+        }
+    }
+
+    /**
+     * Joins the call and starts the local media, unless this call is already running. Needs a ready
+     * {@link WebRtcEngine}.
+     */
+    public void startCall(UserEntity userEntity, String roomToken, boolean audioOnly) {
+        if (isInCall(roomToken)) {
+            return;
+        }
+
+        if (callActive) {
+            hangup(false);
+        }
+
+        this.userEntity = userEntity;
+        this.roomToken = roomToken;
+        this.audioOnly = audioOnly;
+        callSession = "0";
+        callActive = true;
+        callStartedAt = SystemClock.elapsedRealtime();
+        firstSessionDescriptionSent.set(false);
+        attachments = 0;
+        audioOn = true;
+        videoOn = !audioOnly;
+
+        credentials = ApiHelper.getCredentials(userEntity.getUsername(), userEntity.getToken());
+        signalingTransport = new LongPollingSignalingTransport(signalingNcApi, networkScheduler);
+        callJoinPipeline = new CallJoinPipeline(signalingNcApi, iceServersCache, networkScheduler);
+        inboundSignalingQueue = new InboundSignalingQueue(this::receivedSignalingMessage);
+        signalingMessageBatcher = new SignalingMessageBatcher(signalingNcApi, credentials,
+                ApiHelper.getUrlForSignaling(userEntity.getBaseUrl()), this::receivedSignalingMessages,
+                networkScheduler);
+        callStatsSampler = new CallStatsSampler(peerRegistry, signalingScheduler);
+        if (BuildConfig.DEBUG) {
+            startSignalingTrace();
+            statsFileLog = new StatsFileLog(getCacheDir());
+        }
+        captureFormatGovernor = new CaptureFormatGovernor(MagicWebRTCUtils.getDeviceClass(this));
+        captureFormatGovernor.setUplinkKbps(MagicWebRTCUtils.getUplinkKbps(this));
+        mediaBandwidthProfile = MagicWebRTCUtils.getMediaBandwidthProfile(this);
+
+        startForeground(NOTIFICATION_ID, createNotification());
+
+        //Take the local tracks from the engine
+        localAudioTrack = webRtcEngine.createLocalAudioTrack();
+        localMediaStream = webRtcEngine.getPeerConnectionFactory().createLocalMediaStream("NCMS");
+        localMediaStream.addTrack(localAudioTrack);
+
+        if (!audioOnly) {
+            createCameraEnumerator();
+            videoCapturer = createCameraCapturer(cameraEnumerator);
+            videoSource = webRtcEngine.createVideoSource(videoCapturer);
+            localVideoTrack = webRtcEngine.createLocalVideoTrack(videoSource);
+            localMediaStream.addTrack(localVideoTrack);
+        }
+
+        // Create and audio manager that will take care of audio routing,
+        // audio modes, audio device enumeration etc.
+        audioManager = MagicAudioManager.create(getApplicationContext());
+        // Store existing audio settings and change audio mode to
+        // MODE_IN_COMMUNICATION for best possible VoIP performance.
+        Log.d(TAG, "Starting the audio manager...");
+        audioManager.start(new MagicAudioManager.AudioManagerEvents() {
+            @Override
+            public void onAudioDeviceChanged(MagicAudioManager.AudioDevice selectedAudioDevice,
+                                             Set<MagicAudioManager.AudioDevice> availableAudioDevices) {
+                onAudioManagerDevicesChanged(selectedAudioDevice, availableAudioDevices);
+            }
+        });
+
+        if (localVideoTrack != null) {
+            startVideoCapture();
+        }
+
+        sdpConstraints = createSdpConstraints();
+
+        startPullingSignalingMessages(false);
+        registerNetworkReceiver();
+    }
+
+    /**
+     * Ends the call for good and stops the service.
+     */
+    public void hangup() {
+        if (callActive) {
+            hangup(false);
+        }
+        stopForeground(true);
+        stopSelf();
+    }
+
+    @Nullable
+    public VideoTrack getLocalVideoTrack() {
+        return localVideoTrack;
+    }
+
+    /**
+     * @return the remote streams of the call by session id, for an activity that attaches late
+     */
+    public Map<String, MediaStream> getRemoteStreams() {
+        return new HashMap<>(remoteStreams);
+    }
+
+    @Nullable
+    public MagicPeerConnectionWrapper getPeerConnectionWrapper(String sessionId) {
+        return peerRegistry.get(sessionId);
+    }
+
+    public boolean isAudioOnly() {
+        return audioOnly;
+    }
+
+    public boolean isAudioOn() {
+        return audioOn;
+    }
+
+    public boolean isVideoOn() {
+        return videoOn;
+    }
+
+    public boolean canSwitchCamera() {
+        return cameraEnumerator != null && cameraEnumerator.getDeviceNames().length > 1;
+    }
+
+    public void setAudioEnabled(boolean enable) {
+        audioOn = enable;
+        if (localAudioTrack != null) {
+            localAudioTrack.setEnabled(enable);
+        }
+        sendStatus(enable, null);
+    }
+
+    public void setVideoEnabled(boolean enable) {
+        videoOn = enable;
+        toggleVideo(enable);
+    }
+
+    private void toggleVideo(boolean enable) {
+        if (enable) {
+            startVideoCapture();
+        } else {
+            stopVideoCapture();
+        }
+
+        if (localVideoTrack != null) {
+            localVideoTrack.setEnabled(enable);
+        }
+        sendStatus(null, enable);
+    }
+
+    private void sendStatus(@Nullable Boolean audioOn, @Nullable Boolean videoOn) {
+        List<MagicPeerConnectionWrapper> magicPeerConnectionWrappers = peerRegistry.getPeerConnectionWrappers();
+        for (int i = 0; i < magicPeerConnectionWrappers.size(); i++) {
+            magicPeerConnectionWrappers.get(i).sendStatus(audioOn, videoOn);
+        }
+    }
+
+    /**
+     * Drops video for the rest of the call: the camera is released, the local video track removed and
+     * every peer renegotiated without receiving video, so nothing is decoded or rendered anymore.
+     */
+    public void switchToAudioOnly() {
+        if (audioOnly || localMediaStream == null) {
+            return;
+        }
+
+        Log.d(TAG, "Switching to audio only");
+        audioOnly = true;
+        videoOn = false;
+
+        if (videoCapturer != null) {
+            stopVideoCapture();
+            videoCapturer.dispose();
+            videoCapturer = null;
+        }
+
+        if (localVideoTrack != null) {
+            localMediaStream.removeTrack(localVideoTrack);
+            localVideoTrack = null;
+        }
+
+        if (videoSource != null) {
+            videoSource.dispose();
+            videoSource = null;
+        }
+
+        sdpConstraints = createSdpConstraints();
+        for (MagicPeerConnectionWrapper magicPeerConnectionWrapper : peerRegistry.getPeerConnectionWrappers()) {
+            magicPeerConnectionWrapper.sendStatus(null, false);
+            magicPeerConnectionWrapper.renegotiate(sdpConstraints);
+        }
+    }
+
+    public void switchCamera() {
+        if (videoCapturer instanceof CameraVideoCapturer) {
+            ((CameraVideoCapturer) videoCapturer).switchCamera(null);
+        }
+    }
+
+    /**
+     * Starts the camera again once the call is visible, if video is on.
+     */
+    public void resumeVideoCapture() {
+        if (videoOn) {
+            startVideoCapture();
+        }
+    }
+
+    /**
+     * Stops the camera while nobody can see the call, the peers see the last frame in the meantime.
+     */
+    public void pauseVideoCapture() {
+        stopVideoCapture();
+    }
+
+    /**
+     * Tells the peers how large their video is drawn here.
+     */
+    public void setLocalTileSize(int tileWidth, int tileHeight) {
+        localTileWidth = tileWidth;
+        localTileHeight = tileHeight;
+        for (MagicPeerConnectionWrapper magicPeerConnectionWrapper : peerRegistry.getPeerConnectionWrappers()) {
+            magicPeerConnectionWrapper.setLocalTileSize(tileWidth, tileHeight);
+        }
+    }
+
+    private Notification createNotification() {
+        NotificationManager notificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && notificationManager != null) {
+            notificationManager.createNotificationChannel(new NotificationChannel(NOTIFICATION_CHANNEL_ID,
+                    getString(R.string.nc_call_notification_channel), NotificationManager.IMPORTANCE_LOW));
+        }
+
+        Intent callIntent = new Intent(this, CallActivity.class);
+        BundleBuilder bundleBuilder = new BundleBuilder(new Bundle());
+        bundleBuilder.putString("roomToken", roomToken);
+        bundleBuilder.putParcelable("userEntity", Parcels.wrap(userEntity));
+        bundleBuilder.putBoolean(BundleKeys.KEY_AUDIO_ONLY, audioOnly);
+        callIntent.putExtras(bundleBuilder.build());
+        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, callIntent,
+                PendingIntent.FLAG_UPDATE_CURRENT);
+
+        return new NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_call_black_24dp)
+                .setContentTitle(getString(R.string.nc_call_ongoing))
+                .setContentIntent(pendingIntent)
+                .setOngoing(true)
+                .build();
+    }
+
+    private void createCameraEnumerator() {
+        if (Camera2Enumerator.isSupported(this)) {
+            cameraEnumerator = new Camera2Enumerator(this);
+        } else {
+            cameraEnumerator = new Camera1Enumerator(false);
+        }
+    }
+
+    private VideoCapturer createCameraCapturer(CameraEnumerator enumerator) {
+        final String[] deviceNames = enumerator.getDeviceNames();
+
+        // First, try to find front facing camera
+        Logging.d(TAG, "Looking for front facing cameras.");
+        for (String deviceName : deviceNames) {
+            if (enumerator.isFrontFacing(deviceName)) {
+                Logging.d(TAG, "Creating front facing camera capturer.");
+                VideoCapturer videoCapturer = enumerator.createCapturer(deviceName, null);
+
+                if (videoCapturer != null) {
+                    return videoCapturer;
+                }
+            }
+        }
+
+        // Front facing camera not found, try something else
+        Logging.d(TAG, "Looking for other cameras.");
+        for (String deviceName : deviceNames) {
+            if (!enumerator.isFrontFacing(deviceName)) {
+                Logging.d(TAG, "Creating other camera capturer.");
+                VideoCapturer videoCapturer = enumerator.createCapturer(deviceName, null);
+
+                if (videoCapturer != null) {
+                    return videoCapturer;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private MediaConstraints createSdpConstraints() {
+        MediaConstraints mediaConstraints = new MediaConstraints();
+        mediaConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveAudio", "true"));
+        mediaConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveVideo",
+                Boolean.toString(!audioOnly)));
+        mediaConstraints.optional.add(new MediaConstraints.KeyValuePair("internalSctpDataChannels", "true"));
+        mediaConstraints.optional.add(new MediaConstraints.KeyValuePair("DtlsSrtpKeyAgreement", "true"));
+        return mediaConstraints;
+    }
+
+    private void startPullingSignalingMessages(boolean restart) {
+
+        if (restart) {
+            dispose(null);
+            hangupNetworkCalls();
+        }
+
+        leavingCall = false;
+
+        callJoinPipeline.join(userEntity, roomToken)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Observer<CallJoinPipeline.JoinResult>() {
+                    @Override
+                    public void onSubscribe(Disposable d) {
+
+                    }
+
+                    @Override
+                    public void onNext(CallJoinPipeline.JoinResult joinResult) {
+                        iceServers = new ArrayList<>(joinResult.getIceServers());
+                        callSession = joinResult.getCallSession();
+                        Log.d(TAG, "Joined the call in " + joinResult.getTimeToJoined() + " ms, stages: "
+                                + joinResult.getStageTimings() + ", ICE servers cache hits: "
+                                + iceServersCache.getHits() + ", misses: " + iceServersCache.getMisses());
+
+                        startPingingCall();
+                        pullSignalingMessages();
+                        callStatsSampler.start();
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        // a rejected join may come down to stale TURN credentials, the next try fetches new ones
+                        Log.d(TAG, "Failed to join the call");
+                        iceServersCache.invalidate(userEntity);
+                    }
+
+                    @Override
+                    public void onComplete() {
+
+                    }
+                });
+    }
+
+    private void startVideoCapture() {
+        if (videoCapturer != null && !videoCapturing) {
+            CaptureFormatGovernor.CaptureFormat captureFormat = captureFormatGovernor.getCaptureFormat();
+            videoCapturer.startCapture(captureFormat.getWidth(), captureFormat.getHeight(),
+                    captureFormat.getFramerate());
+            videoCapturing = true;
+        }
+    }
+
+    private void stopVideoCapture() {
+        if (videoCapturer != null && videoCapturing) {
+            try {
+                videoCapturing = false;
+                videoCapturer.stopCapture();
+            } catch (InterruptedException e) {
+                Log.e(TAG, "Failed to stop the capturing process");
+            }
+        }
+    }
+
+    private void updateCaptureFormat() {
+        captureFormatGovernor.setPeerCount(peerRegistry.size());
+        updateMaxDisplaySize();
+        CaptureFormatGovernor.CaptureFormat captureFormat = captureFormatGovernor.update();
+
+        if (captureFormat != null) {
+            Log.d(TAG, "Switching capture format to " + captureFormat + " for " + peerRegistry.size()
+                    + " peers");
+            // a stopped capturer picks the new format up when it is started again
+            if (videoCapturing && videoCapturer != null) {
+                videoCapturer.changeCaptureFormat(captureFormat.getWidth(), captureFormat.getHeight(),
+                        captureFormat.getFramerate());
+            }
+        }
+    }
+
+    /**
+     * Caps the capture format at the largest tile a peer shows us in. Peers that never said how large
+     * that is, like the web client, might show us full screen, so then there is no cap at all.
+     */
+    private void updateMaxDisplaySize() {
+        int maxWidth = CaptureFormatGovernor.DISPLAY_SIZE_UNKNOWN;
+        int maxHeight = CaptureFormatGovernor.DISPLAY_SIZE_UNKNOWN;
+        for (MagicPeerConnectionWrapper magicPeerConnectionWrapper : peerRegistry.getPeerConnectionWrappers()) {
+            int width = magicPeerConnectionWrapper.getRemoteTileWidth();
+            int height = magicPeerConnectionWrapper.getRemoteTileHeight();
+            if (width <= 0 || height <= 0) {
+                maxWidth = CaptureFormatGovernor.DISPLAY_SIZE_UNKNOWN;
+                maxHeight = CaptureFormatGovernor.DISPLAY_SIZE_UNKNOWN;
+                break;
+            }
+
+            if (Math.max(width, height) > Math.max(maxWidth, maxHeight)) {
+                maxWidth = width;
+                maxHeight = height;
+            }
+        }
+
+        captureFormatGovernor.setMaxDisplaySize(maxWidth, maxHeight);
+    }
+
+    private void startPingingCall() {
+        signalingNcApi.pingCall(credentials, ApiHelper.getUrlForCallPing(userEntity.getBaseUrl(), roomToken))
+                .subscribeOn(networkScheduler)
+                .observeOn(AndroidSchedulers.mainThread())
+                .repeatWhen(completed -> completed.delay(5000, TimeUnit.MILLISECONDS))
+                .repeatUntil(booleanSupplier)
+                .retry(3)
+                .subscribe(new Observer<GenericOverall>() {
+                    @Override
+                    public void onSubscribe(Disposable d) {
+                        pingDisposable = d;
+                    }
+
+                    @Override
+                    public void onNext(GenericOverall genericOverall) {
+
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        dispose(pingDisposable);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        dispose(pingDisposable);
+                    }
+                });
+    }
+
+    private void pullSignalingMessages() {
+        signalingTransport.pullSignalingMessages(credentials,
+                ApiHelper.getUrlForSignaling(userEntity.getBaseUrl()), booleanSupplier)
+                .subscribe(new Observer<SignalingOverall>() {
+                    @Override
+                    public void onSubscribe(Disposable d) {
+                        signalingDisposable = d;
+                    }
+
+                    @Override
+                    public void onNext(SignalingOverall signalingOverall) {
+                        receivedSignalingMessages(signalingOverall);
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        dispose(signalingDisposable);
+
+                        if (!leavingCall && signalingTransport instanceof LongPollingSignalingTransport) {
+                            Log.d(TAG, "Long polling failed, falling back to regular polling");
+                            signalingTransport = new PollingSignalingTransport(signalingNcApi, networkScheduler);
+                            pullSignalingMessages();
+                        }
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        dispose(signalingDisposable);
+                    }
+                });
+    }
+
+    private void startSignalingTrace() {
+        File tracesDir = new File(getCacheDir(), "signaling-traces");
+        if (!tracesDir.isDirectory() && !tracesDir.mkdirs()) {
+            return;
+        }
+
+        try {
+            signalingTraceRecorder = new SignalingTraceRecorder(new File(tracesDir,
+                    "trace-" + System.currentTimeMillis() + ".gz"));
+            signalingMessageBatcher.setSignalingTraceRecorder(signalingTraceRecorder);
+            signalingTraceInterceptor.setSignalingTraceRecorder(signalingTraceRecorder);
+        } catch (IOException e) {
+            Log.d(TAG, "Failed to start the signaling trace");
+        }
+    }
+
+    private void receivedSignalingMessages(SignalingOverall signalingOverall) {
+        inboundSignalingQueue.enqueueBatch(signalingOverall.getOcs().getSignalings());
+    }
+
+    private void receivedSignalingMessage(Signaling signaling) throws IOException {
+        String messageType = signaling.getType();
+
+        if (leavingCall) {
+            return;
+        }
+
+        SignalingData signalingData = signaling.getSignalingData();
+        if (signalingData == null) {
+            Log.d(TAG, "Received a signaling message without data");
+            return;
+        }
+
+        if ("usersInRoom".equals(messageType) && signalingData.getUsersInRoom() != null) {
+            processUsersInRoom(signalingData.getUsersInRoom());
+        } else if ("message".equals(messageType) && signalingData.getMessage() != null) {
+            NCSignalingMessage ncSignalingMessage = signalingData.getMessage();
+            if ("video".equals(ncSignalingMessage.getRoomType())) {
+                MagicPeerConnectionWrapper magicPeerConnectionWrapper = alwaysGetPeerConnectionWrapperForSessionId
+                        (ncSignalingMessage.getFrom());
+
+                String type = null;
+                if (ncSignalingMessage.getPayload() != null && ncSignalingMessage.getPayload().getType() !=
+                        null) {
+                    type = ncSignalingMessage.getPayload().getType();
+                } else if (ncSignalingMessage.getType() != null) {
+                    type = ncSignalingMessage.getType();
+                }
+
+                if (type != null) {
+                    switch (type) {
+                        case "offer":
+                        case "answer":
+                            magicPeerConnectionWrapper.setNick(ncSignalingMessage.getPayload().getNick());
+                            String sessionDescriptionStringWithPreferredCodec = MagicWebRTCUtils
+                                    .rewriteSessionDescription(ncSignalingMessage.getPayload().getSdp(),
+                                            webRtcEngine.getVideoCodecPolicy(),
+                                            magicPeerConnectionWrapper.getMediaBandwidthProfile());
+
+                            SessionDescription sessionDescriptionWithPreferredCodec = new SessionDescription(
+                                    SessionDescription.Type.fromCanonicalForm(type),
+                                    sessionDescriptionStringWithPreferredCodec);
+
+                            magicPeerConnectionWrapper.setRemoteDescription(sessionDescriptionWithPreferredCodec);
+                            break;
+                        case "candidate":
+                            NCIceCandidate ncIceCandidate = ncSignalingMessage.getPayload().getIceCandidate();
+                            IceCandidate iceCandidate = new IceCandidate(ncIceCandidate.getSdpMid(),
+                                    ncIceCandidate.getSdpMLineIndex(), ncIceCandidate.getCandidate());
+                            magicPeerConnectionWrapper.addCandidate(iceCandidate);
+                            break;
+                        case "endOfCandidates":
+                            magicPeerConnectionWrapper.drainIceCandidates();
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            } else {
+                Log.d(TAG, "Something went very very wrong");
+            }
+        } else {
+            Log.d(TAG, "Something went very very wrong");
+        }
+    }
+
+    // This method is called when the audio manager reports audio device change,
+    // e.g. from wired headset to speakerphone.
+    private void onAudioManagerDevicesChanged(
+            final MagicAudioManager.AudioDevice device, final Set<MagicAudioManager.AudioDevice> availableDevices) {
+        Log.d(TAG, "onAudioManagerDevicesChanged: " + availableDevices + ", "
+                + "selected: " + device);
+    }
+
+    private void processUsersInRoom(List<Participant> users) {
+        RosterState.RosterDelta rosterDelta = rosterState.update(users, callSession, peerRegistry.getSessionIds());
+
+        if (leavingCall || rosterDelta.isEmpty()) {
+            return;
+        }
+
+        for (String sessionId : rosterDelta.getJoined()) {
+            alwaysGetPeerConnectionWrapperForSessionId(sessionId);
+        }
+
+        for (String sessionId : rosterDelta.getLeft()) {
+            endPeerConnection(sessionId);
+        }
+
+        updateCaptureFormat();
+    }
+
+    private void deleteMagicPeerConnection(MagicPeerConnectionWrapper magicPeerConnectionWrapper) {
+        Log.d(TAG, "ICE candidates of " + magicPeerConnectionWrapper.getSessionId() + ": "
+                + magicPeerConnectionWrapper.getIceCandidateBuffer());
+        if (magicPeerConnectionWrapper.getPeerConnection() != null) {
+            magicPeerConnectionWrapper.getPeerConnection().close();
+        }
+    }
+
+    private MagicPeerConnectionWrapper alwaysGetPeerConnectionWrapperForSessionId(String sessionId) {
+        return peerRegistry.getOrCreate(sessionId, newSessionId -> {
+            MagicPeerConnectionWrapper magicPeerConnectionWrapper = new MagicPeerConnectionWrapper(
+                    webRtcEngine.getPeerConnectionFactory(), iceServers, sdpConstraints, newSessionId, callSession,
+                    localMediaStream, webRtcEngine.getVideoCodecPolicy(), mediaBandwidthProfile);
+            // the tracks know best, video is also off while the phone is held to the ear
+            magicPeerConnectionWrapper.setLocalMediaState(localAudioTrack != null && localAudioTrack.enabled(),
+                    localVideoTrack != null && localVideoTrack.enabled());
+            if (localTileWidth > 0) {
+                magicPeerConnectionWrapper.setLocalTileSize(localTileWidth, localTileHeight);
+            }
+            return magicPeerConnectionWrapper;
+        });
+    }
+
+    private void endPeerConnection(String sessionId) {
+        MagicPeerConnectionWrapper magicPeerConnectionWrapper;
+        // removing first makes sure only one thread gets to close the connection
+        if ((magicPeerConnectionWrapper = peerRegistry.remove(sessionId)) != null) {
+            if (reconnectionTracker.peerRemoved(sessionId, SystemClock.elapsedRealtime())) {
+                mainHandler.post(this::finishReconnection);
+            }
+            if (remoteStreams.remove(sessionId) != null) {
+                eventBus.post(new MediaStreamEvent(null, sessionId));
+            }
+            deleteMagicPeerConnection(magicPeerConnectionWrapper);
+        }
+    }
+
+    private void hangup(boolean dueToNetworkChange) {
+
+        leavingCall = true;
+        callStatsSampler.stop();
+        if (reconnectTimeoutDisposable != null && !reconnectTimeoutDisposable.isDisposed()) {
+            reconnectTimeoutDisposable.dispose();
+        }
+        Log.d(TAG, "Reconnected in place " + reconnectionTracker.getSuccesses() + " out of "
+                + reconnectionTracker.getAttempts() + " times, average " + reconnectionTracker.getAverageReconnectMs()
+                + " ms, fell back to rejoining " + reconnectionTracker.getFallbacks() + " times");
+        dispose(null);
+        signalingMessageBatcher.clear();
+        Log.d(TAG, "Sent " + signalingMessageBatcher.getMessagesSent() + " signaling messages, saved "
+                + signalingMessageBatcher.getRequestsSaved() + " requests by batching");
+        Log.d(TAG, "Processed " + inboundSignalingQueue.getMessagesProcessed() + " inbound signaling messages, "
+                + "max queue depth " + inboundSignalingQueue.getMaxQueueDepth() + ", average wait "
+                + inboundSignalingQueue.getAverageWaitMs() + " ms, max wait " + inboundSignalingQueue.getMaxWaitMs()
+                + " ms");
+        Log.d(TAG, "Signaling executor created " + signalingExecutor.getThreadsCreated() + " threads for "
+                + signalingExecutor.getTasksExecuted() + " tasks");
+
+        for (String sessionId : peerRegistry.getSessionIds()) {
+            endPeerConnection(sessionId);
+        }
+        Log.d(TAG, "Processed " + rosterState.getRostersProcessed() + " rosters, skipped "
+                + rosterState.getRostersSkipped() + " unchanged ones");
+        rosterState.reset();
+
+        if (!dueToNetworkChange) {
+            releaseLocalMedia();
+            Log.d(TAG, "The call survived " + Math.max(0, attachments - 1) + " activity recreations that would "
+                    + "have been rejoins");
+            callActive = false;
+            if (networkReceiver != null) {
+                unregisterReceiver(networkReceiver);
+                networkReceiver = null;
+            }
+            if (audioManager != null) {
+                audioManager.stop();
+                audioManager = null;
+            }
+            inboundSignalingQueue.shutdown();
+            if (signalingTraceRecorder != null) {
+                signalingTraceInterceptor.setSignalingTraceRecorder(null);
+                signalingTraceRecorder.close();
+                signalingTraceRecorder = null;
+            }
+            hangupNetworkCalls();
+        }
+    }
+
+    /**
+     * Only done when the call ends for good: after a network change the call is rejoined right away and
+     * the new peer connections need the local stream, closing the old ones leaves it intact.
+     */
+    private void releaseLocalMedia() {
+        if (localMediaStream != null) {
+            if (localMediaStream.videoTracks != null && localMediaStream.videoTracks.size() > 0) {
+                localMediaStream.removeTrack(localMediaStream.videoTracks.get(0));
+            }
+
+            if (localMediaStream.audioTracks != null && localMediaStream.audioTracks.size() > 0) {
+                localMediaStream.removeTrack(localMediaStream.audioTracks.get(0));
+            }
+        }
+
+        localVideoTrack = null;
+        localAudioTrack = null;
+        localMediaStream = null;
+
+        stopVideoCapture();
+        if (videoCapturer != null) {
+            videoCapturer.dispose();
+            videoCapturer = null;
+        }
+
+        if (videoSource != null) {
+            videoSource.dispose();
+            videoSource = null;
+        }
+    }
+
+    private void hangupNetworkCalls() {
+        String credentials = ApiHelper.getCredentials(userEntity.getUsername(), userEntity.getToken());
+        signalingNcApi.leaveCall(credentials, ApiHelper.getUrlForCall(userEntity.getBaseUrl(), roomToken))
+                .subscribeOn(networkScheduler)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Observer<GenericOverall>() {
+                    @Override
+                    public void onSubscribe(Disposable d) {
+
+                    }
+
+                    @Override
+                    public void onNext(GenericOverall genericOverall) {
+                        signalingNcApi.leaveRoom(credentials, ApiHelper.getUrlForRoom(userEntity.getBaseUrl(),
+                                roomToken))
+                                .subscribeOn(networkScheduler)
+                                .observeOn(AndroidSchedulers.mainThread())
+                                .subscribe(new Observer<GenericOverall>() {
+                                    @Override
+                                    public void onSubscribe(Disposable d) {
+
+                                    }
+
+                                    @Override
+                                    public void onNext(GenericOverall genericOverall) {
+
+                                    }
+
+                                    @Override
+                                    public void onError(Throwable e) {
+
+                                    }
+
+                                    @Override
+                                    public void onComplete() {
+
+                                    }
+                                });
+
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+
+                    }
+
+                    @Override
+                    public void onComplete() {
+
+                    }
+                });
+    }
+
+    private void dispose(@Nullable Disposable disposable) {
+        if (disposable != null && !disposable.isDisposed()) {
+            disposable.dispose();
+        } else if (disposable == null) {
+
+            if (pingDisposable != null && !pingDisposable.isDisposed()) {
+                pingDisposable.dispose();
+                pingDisposable = null;
+            }
+
+            if (signalingDisposable != null && !signalingDisposable.isDisposed()) {
+                signalingDisposable.dispose();
+                signalingDisposable = null;
+            }
+        }
+    }
+
+    @Subscribe(threadMode = ThreadMode.BACKGROUND)
+    public void onMessageEvent(PeerConnectionEvent peerConnectionEvent) {
+        if (peerConnectionEvent.getPeerConnectionEventType().equals(PeerConnectionEvent.PeerConnectionEventType
+                .CLOSE_PEER)) {
+            // failing ICE is expected while reconnecting, the reconnect timeout takes care of it
+            if (!reconnectionTracker.isReconnecting()) {
+                endPeerConnection(peerConnectionEvent.getSessionId());
+                updateCaptureFormat();
+            }
+        } else if (peerConnectionEvent.getPeerConnectionEventType().equals(PeerConnectionEvent
+                .PeerConnectionEventType.TILE_SIZE_CHANGE)) {
+            updateCaptureFormat();
+        } else if (peerConnectionEvent.getPeerConnectionEventType().equals(PeerConnectionEvent
+                .PeerConnectionEventType.ICE_CONNECTED)) {
+            if (reconnectionTracker.peerConnected(peerConnectionEvent.getSessionId(),
+                    SystemClock.elapsedRealtime())) {
+                mainHandler.post(this::finishReconnection);
+            }
+        } else if (peerConnectionEvent.getPeerConnectionEventType().equals(PeerConnectionEvent
+                .PeerConnectionEventType.SENSOR_FAR) ||
+                peerConnectionEvent.getPeerConnectionEventType().equals(PeerConnectionEvent
+                        .PeerConnectionEventType.SENSOR_NEAR)) {
+            // the camera goes dark at the ear, but only comes back if the user had it on. Without an
+            // activity the sensor can only be covered by a pocket or a table, so the camera is left alone
+            if (videoOn && activityBound) {
+                toggleVideo(peerConnectionEvent.getPeerConnectionEventType().equals(PeerConnectionEvent
+                        .PeerConnectionEventType.SENSOR_FAR));
+            }
+        }
+    }
+
+    @Subscribe(threadMode = ThreadMode.POSTING)
+    public void onMessageEvent(MediaStreamEvent mediaStreamEvent) {
+        // only the connections that are still around, a closed one may report its stream late
+        if (mediaStreamEvent.getMediaStream() != null && peerRegistry.contains(mediaStreamEvent.getSession())) {
+            remoteStreams.put(mediaStreamEvent.getSession(), mediaStreamEvent.getMediaStream());
+        } else if (mediaStreamEvent.getMediaStream() == null) {
+            remoteStreams.remove(mediaStreamEvent.getSession());
+        }
+    }
+
+    @Subscribe(threadMode = ThreadMode.BACKGROUND)
+    public void onMessageEvent(PeerStatsEvent peerStatsEvent) {
+        if (statsFileLog != null) {
+            statsFileLog.append(peerStatsEvent.getPeerStatsSnapshot());
+        }
+    }
+
+    @Subscribe(threadMode = ThreadMode.BACKGROUND)
+    public void onMessageEvent(SessionDescriptionSendEvent sessionDescriptionSend) throws IOException {
+        NCMessageWrapper ncMessageWrapper = new NCMessageWrapper();
+        ncMessageWrapper.setEv("message");
+        ncMessageWrapper.setSessionId(callSession);
+        NCSignalingMessage ncSignalingMessage = new NCSignalingMessage();
+        ncSignalingMessage.setTo(sessionDescriptionSend.getPeerId());
+        ncSignalingMessage.setRoomType("video");
+        ncSignalingMessage.setType(sessionDescriptionSend.getType());
+        NCMessagePayload ncMessagePayload = new NCMessagePayload();
+        ncMessagePayload.setType(sessionDescriptionSend.getType());
+
+        if (!"candidate".equals(sessionDescriptionSend.getType())) {
+            if (firstSessionDescriptionSent.compareAndSet(false, true)) {
+                Log.d(TAG, "First " + sessionDescriptionSend.getType() + " sent "
+                        + (SystemClock.elapsedRealtime() - callStartedAt) + " ms after starting the call");
+            }
+            ncMessagePayload.setSdp(sessionDescriptionSend.getSessionDescription().description);
+            ncMessagePayload.setNick(userEntity.getDisplayName());
+        } else {
+            ncMessagePayload.setIceCandidate(sessionDescriptionSend.getNcIceCandidate());
+        }
+
+
+        // Set all we need
+        ncSignalingMessage.setPayload(ncMessagePayload);
+        ncMessageWrapper.setSignalingMessage(ncSignalingMessage);
+
+
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("{");
+        stringBuilder.append("\"fn\":\"");
+        stringBuilder.append(StringEscapeUtils.escapeJson(LoganSquare.serialize(ncMessageWrapper
+                .getSignalingMessage()))).append("\"");
+        stringBuilder.append(",");
+        stringBuilder.append("\"sessionId\":");
+        stringBuilder.append("\"").append(StringEscapeUtils.escapeJson(callSession)).append("\"");
+        stringBuilder.append(",");
+        stringBuilder.append("\"ev\":\"message\"");
+        stringBuilder.append("}");
+
+        signalingMessageBatcher.enqueue(stringBuilder.toString(),
+                !"candidate".equals(sessionDescriptionSend.getType()));
+    }
+
+    private void updateMediaBandwidthProfile(MediaBandwidthProfile newMediaBandwidthProfile) {
+        if (newMediaBandwidthProfile == mediaBandwidthProfile) {
+            return;
+        }
+
+        Log.d(TAG, "Switching media bandwidth profile from " + mediaBandwidthProfile + " to "
+                + newMediaBandwidthProfile);
+        mediaBandwidthProfile = newMediaBandwidthProfile;
+        for (MagicPeerConnectionWrapper magicPeerConnectionWrapper : peerRegistry.getPeerConnectionWrappers()) {
+            magicPeerConnectionWrapper.setMediaBandwidthProfile(newMediaBandwidthProfile);
+        }
+    }
+
+    private void registerNetworkReceiver() {
+        IntentFilter intentFilter = new IntentFilter();
+        intentFilter.addAction("android.net.conn.CONNECTIVITY_CHANGE");
+        intentFilter.addAction("android.net.wifi.STATE_CHANGE");
+
+        networkReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                captureFormatGovernor.setUplinkKbps(MagicWebRTCUtils.getUplinkKbps(context));
+                updateMediaBandwidthProfile(MagicWebRTCUtils.getMediaBandwidthProfile(context));
+                if (!leavingCall) {
+                    updateCaptureFormat();
+                }
+
+                String networkKey = MagicWebRTCUtils.getActiveNetworkKey(context);
+                if (isInitialStickyBroadcast()) {
+                    activeNetworkKey = networkKey;
+                    return;
+                }
+
+                boolean connected = !Device.getNetworkType(context).equals(JobRequest.NetworkType.ANY);
+                if (leavingCall) {
+                    if (connected) {
+                        startPullingSignalingMessages(true);
+                    }
+                } else if (!connected) {
+                    startReconnection();
+                } else if (!TextUtils.equals(networkKey, activeNetworkKey) || reconnectionTracker.isReconnecting()) {
+                    restartIce();
+                }
+
+                activeNetworkKey = networkKey;
+            }
+        };
+
+        this.registerReceiver(networkReceiver, intentFilter);
+    }
+
+    /**
+     * Keeps the peer connections around when the network goes away, in the hope that it comes back
+     * before {@link #RECONNECT_TIMEOUT_MS}.
+     */
+    private void startReconnection() {
+        if (reconnectionTracker.start()) {
+            Log.d(TAG, "Network changed, keeping " + peerRegistry.size() + " peer connections for a reconnect");
+            reconnectTimeoutDisposable = Completable.timer(RECONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS,
+                    signalingScheduler)
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .subscribe(this::fallBackToRejoin);
+        }
+    }
+
+    private void restartIce() {
+        startReconnection();
+
+        // the signaling requests most likely died with the previous network
+        dispose(null);
+        startPingingCall();
+        pullSignalingMessages();
+
+        if (reconnectionTracker.restartStarted(peerRegistry.getSessionIds(), SystemClock.elapsedRealtime())) {
+            finishReconnection();
+            return;
+        }
+
+        for (MagicPeerConnectionWrapper magicPeerConnectionWrapper : peerRegistry.getPeerConnectionWrappers()) {
+            magicPeerConnectionWrapper.restartIce();
+        }
+    }
+
+    private void finishReconnection() {
+        if (reconnectTimeoutDisposable != null && !reconnectTimeoutDisposable.isDisposed()) {
+            reconnectTimeoutDisposable.dispose();
+        }
+        Log.d(TAG, "Reconnected in place in " + reconnectionTracker.getLastReconnectMs() + " ms");
+    }
+
+    private void fallBackToRejoin() {
+        if (!reconnectionTracker.fallBack()) {
+            return;
+        }
+
+        Log.d(TAG, "Could not reconnect in place within " + RECONNECT_TIMEOUT_MS + " ms, rejoining the call");
+        // ICE did not come back with the TURN servers we had, so the rejoin fetches them again
+        iceServersCache.invalidate(userEntity);
+        hangup(true);
+        if (!Device.getNetworkType(this).equals(JobRequest.NetworkType.ANY)) {
+            startPullingSignalingMessages(true);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Picks the remote participants whose video is worth drawing: the ones that spoke most recently,
+ * based on the audio levels from the stats reports. Everyone else gets an avatar instead.
+ * <p>
+ * To keep tiles from flickering, a participant only takes over a slot from somebody who has been
+ * quiet and on screen for at least the hold time.
+ */
+public class ActiveSpeakerDetector {
+    public static final int DEFAULT_MAX_RENDERED = 3;
+
+    // audioOutputLevel goes up to 32767, background noise usually stays below this
+    static final long SPEAKING_LEVEL = 1000;
+    static final long HOLD_MS = 4000;
+
+    private final int maxRendered;
+    private final long speakingLevel;
+    private final long holdMs;
+
+    // in joining order, which breaks ties between participants that never spoke
+    private final Map<String, Speaker> speakers = new LinkedHashMap<>();
+
+    private long switches;
+
+    public ActiveSpeakerDetector(int maxRendered) {
+        this(maxRendered, SPEAKING_LEVEL, HOLD_MS);
+    }
+
+    ActiveSpeakerDetector(int maxRendered, long speakingLevel, long holdMs) {
+        this.maxRendered = maxRendered;
+        this.speakingLevel = speakingLevel;
+        this.holdMs = holdMs;
+    }
+
+    public synchronized void addParticipant(String sessionId) {
+        if (!speakers.containsKey(sessionId)) {
+            speakers.put(sessionId, new Speaker());
+        }
+    }
+
+    public synchronized void removeParticipant(String sessionId) {
+        speakers.remove(sessionId);
+    }
+
+    public synchronized void onAudioLevel(String sessionId, long audioLevel, long nowMs) {
+        Speaker speaker = speakers.get(sessionId);
+        if (speaker != null && audioLevel >= speakingLevel) {
+            speaker.lastSpokeMs = nowMs;
+        }
+    }
+
+    /**
+     * Fills free slots and hands slots of quiet participants to the ones speaking now.
+     *
+     * @return true if the set of rendered participants changed
+     */
+    public synchronized boolean update(long nowMs) {
+        boolean changed = false;
+
+        List<Speaker> waiting = new ArrayList<>();
+        int renderedCount = 0;
+        for (Speaker speaker : speakers.values()) {
+            if (speaker.rendered) {
+                renderedCount++;
+            } else {
+                waiting.add(speaker);
+            }
+        }
+
+        while (!waiting.isEmpty()) {
+            Speaker candidate = mostRecentSpeaker(waiting);
+
+            if (renderedCount < maxRendered) {
+                renderedCount++;
+            } else {
+                if (nowMs - candidate.lastSpokeMs >= holdMs) {
+                    break;
+                }
+
+                Speaker replaced = leastRecentRenderedSpeaker(nowMs);
+                if (replaced == null) {
+                    break;
+                }
+
+                replaced.rendered = false;
+                switches++;
+            }
+
+            candidate.rendered = true;
+            candidate.renderedSinceMs = nowMs;
+            waiting.remove(candidate);
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    public synchronized boolean isRendered(String sessionId) {
+        Speaker speaker = speakers.get(sessionId);
+        return speaker != null && speaker.rendered;
+    }
+
+    public synchronized Set<String> getRenderedSessionIds() {
+        Set<String> sessionIds = new HashSet<>();
+        for (Map.Entry<String, Speaker> entry : speakers.entrySet()) {
+            if (entry.getValue().rendered) {
+                sessionIds.add(entry.getKey());
+            }
+        }
+        return sessionIds;
+    }
+
+    /**
+     * @return how often a participant lost its slot to somebody who started speaking
+     */
+    public synchronized long getSwitches() {
+        return switches;
+    }
+
+    private Speaker mostRecentSpeaker(List<Speaker> candidates) {
+        Speaker mostRecent = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            Speaker speaker = candidates.get(i);
+            if (mostRecent == null || speaker.lastSpokeMs > mostRecent.lastSpokeMs) {
+                mostRecent = speaker;
+            }
+        }
+        return mostRecent;
+    }
+
+    private Speaker leastRecentRenderedSpeaker(long nowMs) {
+        Speaker leastRecent = null;
+        for (Speaker speaker : speakers.values()) {
+            if (!speaker.rendered || nowMs - speaker.lastSpokeMs < holdMs
+                    || nowMs - speaker.renderedSinceMs < holdMs) {
+                continue;
+            }
+
+            if (leastRecent == null || speaker.lastSpokeMs < leastRecent.lastSpokeMs) {
+                leastRecent = speaker;
+            }
+        }
+        return leastRecent;
+    }
+
+    private static class Speaker {
+        private long lastSpokeMs = Long.MIN_VALUE / 2;
+        private long renderedSinceMs;
+        private boolean rendered;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.content.Context;
+import android.support.annotation.Nullable;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Lays the remote tiles of a call out in a {@link TileGrid} instead of stacking them, so the tiles stay
+ * as large as the participant count and the screen allow. The last row is centered if it is not full.
+ */
+public class CallGridLayout extends ViewGroup {
+
+    public interface OnTileSizeChangedListener {
+        void onTileSizeChanged(int tileWidth, int tileHeight);
+    }
+
+    private TileGrid tileGrid = TileGrid.compute(0, 0, 0);
+    @Nullable
+    private OnTileSizeChangedListener onTileSizeChangedListener;
+    private int reportedTileWidth;
+    private int reportedTileHeight;
+
+    public CallGridLayout(Context context) {
+        super(context);
+    }
+
+    public CallGridLayout(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public CallGridLayout(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    public void setOnTileSizeChangedListener(@Nullable OnTileSizeChangedListener onTileSizeChangedListener) {
+        this.onTileSizeChangedListener = onTileSizeChangedListener;
+    }
+
+    public TileGrid getTileGrid() {
+        return tileGrid;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int height = MeasureSpec.getSize(heightMeasureSpec);
+        int innerWidth = width - getPaddingLeft() - getPaddingRight();
+        int innerHeight = height - getPaddingTop() - getPaddingBottom();
+
+        tileGrid = TileGrid.compute(getVisibleChildCount(), innerWidth, innerHeight);
+
+        int tileWidthSpec = MeasureSpec.makeMeasureSpec(tileGrid.getTileWidth(), MeasureSpec.EXACTLY);
+        int tileHeightSpec = MeasureSpec.makeMeasureSpec(tileGrid.getTileHeight(), MeasureSpec.EXACTLY);
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() != GONE) {
+                child.measure(tileWidthSpec, tileHeightSpec);
+            }
+        }
+
+        setMeasuredDimension(width, height);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        int columns = tileGrid.getColumns();
+        int tileWidth = tileGrid.getTileWidth();
+        int tileHeight = tileGrid.getTileHeight();
+        int visibleChildCount = getVisibleChildCount();
+        int innerWidth = r - l - getPaddingLeft() - getPaddingRight();
+        int innerHeight = b - t - getPaddingTop() - getPaddingBottom();
+        int top = getPaddingTop() + (innerHeight - tileGrid.getRows() * tileHeight) / 2;
+
+        int index = 0;
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() == GONE) {
+                continue;
+            }
+
+            int row = index / columns;
+            int column = index % columns;
+            int tilesInRow = Math.min(columns, visibleChildCount - row * columns);
+            int left = getPaddingLeft() + (innerWidth - tilesInRow * tileWidth) / 2 + column * tileWidth;
+            int childTop = top + row * tileHeight;
+            child.layout(left, childTop, left + tileWidth, childTop + tileHeight);
+            index++;
+        }
+
+        if (visibleChildCount > 0 && (tileWidth != reportedTileWidth || tileHeight != reportedTileHeight)) {
+            reportedTileWidth = tileWidth;
+            reportedTileHeight = tileHeight;
+            if (onTileSizeChangedListener != null) {
+                onTileSizeChangedListener.onTileSizeChanged(tileWidth, tileHeight);
+            }
+        }
+    }
+
+    private int getVisibleChildCount() {
+        int count = 0;
+        for (int i = 0; i < getChildCount(); i++) {
+            if (getChildAt(i).getVisibility() != GONE) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import com.nextcloud.talk.api.NcApi;
+import com.nextcloud.talk.api.helpers.api.ApiHelper;
+import com.nextcloud.talk.persistence.entities.UserEntity;
+
+import org.webrtc.PeerConnection;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+
+/**
+ * Joins a call. Fetching the ICE servers does not depend on joining the room, so it runs in parallel
+ * to the joinRoom -> joinCall chain and both branches are zipped into a single {@link JoinResult}.
+ * <p>
+ * Every stage is timed relative to the start of the pipeline so that time-to-joined can be tracked.
+ */
+public class CallJoinPipeline {
+    public static final String STAGE_ICE_SERVERS = "iceServers";
+    public static final String STAGE_JOIN_ROOM = "joinRoom";
+    public static final String STAGE_JOIN_CALL = "joinCall";
+    public static final String STAGE_JOINED = "joined";
+
+    private final NcApi ncApi;
+    private final IceServersCache iceServersCache;
+    private final Scheduler scheduler;
+
+    public CallJoinPipeline(NcApi ncApi, IceServersCache iceServersCache, Scheduler scheduler) {
+        this.ncApi = ncApi;
+        this.iceServersCache = iceServersCache;
+        this.scheduler = scheduler;
+    }
+
+    public Observable<JoinResult> join(UserEntity userEntity, String roomToken) {
+        return Observable.defer(() -> {
+            String credentials = ApiHelper.getCredentials(userEntity.getUsername(), userEntity.getToken());
+            Map<String, Long> stageTimings = Collections.synchronizedMap(new LinkedHashMap<>());
+            long startedAt = System.nanoTime();
+
+            Observable<List<PeerConnection.IceServer>> iceServersObservable = timed(
+                    iceServersCache.getIceServers(userEntity).subscribeOn(scheduler),
+                    STAGE_ICE_SERVERS, startedAt, stageTimings);
+
+            Observable<String> callSessionObservable = timed(
+                    ncApi.joinRoom(credentials, ApiHelper.getUrlForRoom(userEntity.getBaseUrl(), roomToken))
+                            .subscribeOn(scheduler),
+                    STAGE_JOIN_ROOM, startedAt, stageTimings)
+                    .map(callOverall -> callOverall.getOcs().getData().getSessionId())
+                    .flatMap(callSession -> timed(
+                            ncApi.joinCall(credentials, ApiHelper.getUrlForCall(userEntity.getBaseUrl(), roomToken))
+                                    .subscribeOn(scheduler),
+                            STAGE_JOIN_CALL, startedAt, stageTimings)
+                            .map(genericOverall -> callSession));
+
+            return Observable.zip(iceServersObservable, callSessionObservable, (iceServers, callSession) -> {
+                stageTimings.put(STAGE_JOINED, elapsedMs(startedAt));
+                return new JoinResult(iceServers, callSession, stageTimings);
+            });
+        });
+    }
+
+    private static <T> Observable<T> timed(Observable<T> observable, String stage, long startedAt,
+                                           Map<String, Long> stageTimings) {
+        return observable.doOnNext(t -> stageTimings.put(stage, elapsedMs(startedAt)));
+    }
+
+    private static long elapsedMs(long startedAt) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+    }
+
+    public static class JoinResult {
+        private final List<PeerConnection.IceServer> iceServers;
+        private final String callSession;
+        private final Map<String, Long> stageTimings;
+
+        JoinResult(List<PeerConnection.IceServer> iceServers, String callSession, Map<String, Long> stageTimings) {
+            this.iceServers = iceServers;
+            this.callSession = callSession;
+            this.stageTimings = stageTimings;
+        }
+
+        public List<PeerConnection.IceServer> getIceServers() {
+            return iceServers;
+        }
+
+        public String getCallSession() {
+            return callSession;
+        }
+
+        /**
+         * Milliseconds from the start of the pipeline until each stage finished, in completion order.
+         */
+        public Map<String, Long> getStageTimings() {
+            return stageTimings;
+        }
+
+        public long getTimeToJoined() {
+            Long timeToJoined = stageTimings.get(STAGE_JOINED);
+            return timeToJoined != null ? timeToJoined : -1;
+        }
+    }
+}
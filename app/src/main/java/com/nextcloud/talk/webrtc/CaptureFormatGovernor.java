@@ -0,0 +1,203 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+/**
+ * Picks the local capture format for a mesh call. Every peer gets its own encoder and its own copy of
+ * the upload, so the format is stepped down a fixed ladder as peers join, as the uplink shrinks and on
+ * weaker devices. There is also no point in capturing more than the peers can show, so the format is
+ * kept close to the largest tile our video is drawn in, when the peers tell us about it.
+ * <p>
+ * Plain Java on purpose, the policy can be exercised on the JVM.
+ */
+public class CaptureFormatGovernor {
+
+    public enum DeviceClass {
+        LOW_END(640 * 360 * 30),
+        MID_RANGE(1280 * 720 * 30),
+        HIGH_END(1280 * 720 * 30 * 3);
+
+        // pixels per second the device can encode across all peers
+        private final long encodePixelRate;
+
+        DeviceClass(long encodePixelRate) {
+            this.encodePixelRate = encodePixelRate;
+        }
+    }
+
+    // best first; the last entry is used no matter what
+    static final CaptureFormat[] LADDER = {
+            new CaptureFormat(1280, 720, 30, 1500),
+            new CaptureFormat(960, 540, 30, 1000),
+            new CaptureFormat(640, 480, 30, 600),
+            new CaptureFormat(640, 360, 24, 400),
+            new CaptureFormat(480, 360, 20, 300),
+            new CaptureFormat(320, 240, 15, 150),
+            new CaptureFormat(320, 240, 10, 80),
+    };
+
+    // stepping up needs this much headroom on the uplink so a noisy estimate does not flap the camera
+    static final double STEP_UP_HEADROOM = 1.2;
+
+    public static final long UPLINK_UNKNOWN = -1;
+    public static final int DISPLAY_SIZE_UNKNOWN = -1;
+
+    private final DeviceClass deviceClass;
+    private int peerCount = 1;
+    private long uplinkKbps = UPLINK_UNKNOWN;
+    private int maxDisplayWidth = DISPLAY_SIZE_UNKNOWN;
+    private int maxDisplayHeight = DISPLAY_SIZE_UNKNOWN;
+    private int currentStep = -1;
+
+    public CaptureFormatGovernor(DeviceClass deviceClass) {
+        this.deviceClass = deviceClass;
+    }
+
+    public synchronized void setPeerCount(int peerCount) {
+        this.peerCount = Math.max(1, peerCount);
+    }
+
+    public synchronized void setUplinkKbps(long uplinkKbps) {
+        this.uplinkKbps = uplinkKbps > 0 ? uplinkKbps : UPLINK_UNKNOWN;
+    }
+
+    /**
+     * @param width  the width of the largest tile a peer shows our video in, in pixels
+     * @param height the height of that tile
+     */
+    public synchronized void setMaxDisplaySize(int width, int height) {
+        if (width > 0 && height > 0) {
+            maxDisplayWidth = Math.max(width, height);
+            maxDisplayHeight = Math.min(width, height);
+        } else {
+            maxDisplayWidth = DISPLAY_SIZE_UNKNOWN;
+            maxDisplayHeight = DISPLAY_SIZE_UNKNOWN;
+        }
+    }
+
+    /**
+     * @return the format to capture with right now
+     */
+    public synchronized CaptureFormat getCaptureFormat() {
+        if (currentStep == -1) {
+            currentStep = pickStep();
+        }
+        return LADDER[currentStep];
+    }
+
+    /**
+     * Re-evaluates the policy with the current inputs.
+     *
+     * @return the new format if it differs from the previous one, null otherwise
+     */
+    public synchronized CaptureFormat update() {
+        int step = pickStep();
+        if (step == currentStep) {
+            return null;
+        }
+
+        currentStep = step;
+        return LADDER[step];
+    }
+
+    private int pickStep() {
+        for (int i = 0; i < LADDER.length - 1; i++) {
+            CaptureFormat captureFormat = LADDER[i];
+
+            if (captureFormat.getPixelRate() * peerCount > deviceClass.encodePixelRate) {
+                continue;
+            }
+
+            // a smaller step still fills the largest tile, so this one would only be scaled down again
+            CaptureFormat nextFormat = LADDER[i + 1];
+            if (maxDisplayWidth != DISPLAY_SIZE_UNKNOWN && nextFormat.covers(maxDisplayWidth, maxDisplayHeight)
+                    && nextFormat.width * nextFormat.height < captureFormat.width * captureFormat.height) {
+                continue;
+            }
+
+            if (uplinkKbps != UPLINK_UNKNOWN) {
+                double requiredKbps = (double) captureFormat.getBitrateKbps() * peerCount;
+                if (currentStep != -1 && i < currentStep) {
+                    requiredKbps *= STEP_UP_HEADROOM;
+                }
+
+                if (requiredKbps > uplinkKbps) {
+                    continue;
+                }
+            }
+
+            return i;
+        }
+
+        return LADDER.length - 1;
+    }
+
+    public static class CaptureFormat {
+        private final int width;
+        private final int height;
+        private final int framerate;
+        private final int bitrateKbps;
+
+        CaptureFormat(int width, int height, int framerate, int bitrateKbps) {
+            this.width = width;
+            this.height = height;
+            this.framerate = framerate;
+            this.bitrateKbps = bitrateKbps;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getFramerate() {
+            return framerate;
+        }
+
+        /**
+         * @return the video bitrate one peer needs for this format to look right
+         */
+        public int getBitrateKbps() {
+            return bitrateKbps;
+        }
+
+        /**
+         * @param width  the long side of the display area
+         * @param height the short side of the display area
+         */
+        boolean covers(int width, int height) {
+            return Math.max(this.width, this.height) >= width && Math.min(this.width, this.height) >= height;
+        }
+
+        long getPixelRate() {
+            return (long) width * height * framerate;
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height + "@" + framerate;
+        }
+    }
+}
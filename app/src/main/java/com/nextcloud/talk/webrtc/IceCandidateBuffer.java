@@ -0,0 +1,127 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import org.webrtc.IceCandidate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Remote ICE candidates of a single peer connection. Candidates that arrive before a remote
+ * description are held back and handed out exactly once when it lands, everything after that can be
+ * applied right away until the next remote description, e.g. of an ICE restart, is on its way. A
+ * candidate that was seen before, e.g. from a signaling batch that was pulled again, is dropped. Safe
+ * to use from the signaling handlers and WebRTC's signaling thread at once.
+ */
+public class IceCandidateBuffer {
+    private final Object lock = new Object();
+    private final Set<String> seenCandidates = new HashSet<>();
+    private List<IceCandidate> pendingCandidates = new ArrayList<>();
+    private boolean drained;
+
+    private int buffered;
+    private int applied;
+    private int deduped;
+
+    /**
+     * @return true if the candidate is new and should be applied now, false if it was buffered until
+     * {@link #drain()} or is a duplicate
+     */
+    public boolean add(IceCandidate iceCandidate) {
+        String key = iceCandidate.sdpMid + '\n' + iceCandidate.sdpMLineIndex + '\n' + iceCandidate.sdp;
+        synchronized (lock) {
+            if (!seenCandidates.add(key)) {
+                deduped++;
+                return false;
+            }
+
+            if (drained) {
+                applied++;
+                return true;
+            }
+
+            pendingCandidates.add(iceCandidate);
+            buffered++;
+            return false;
+        }
+    }
+
+    /**
+     * Hands out the buffered candidates once the remote description is set. Only the first call
+     * returns anything, later candidates go straight through {@link #add(IceCandidate)}.
+     */
+    public List<IceCandidate> drain() {
+        synchronized (lock) {
+            if (drained) {
+                return Collections.emptyList();
+            }
+
+            drained = true;
+            List<IceCandidate> drainedCandidates = pendingCandidates;
+            pendingCandidates = null;
+            applied += drainedCandidates.size();
+            return drainedCandidates;
+        }
+    }
+
+    /**
+     * Holds candidates back again while a new remote description is being applied. Candidates that are
+     * still waiting for the first one are kept, candidates seen before are still dropped.
+     */
+    public void reset() {
+        synchronized (lock) {
+            drained = false;
+            if (pendingCandidates == null) {
+                pendingCandidates = new ArrayList<>();
+            }
+        }
+    }
+
+    public int getBuffered() {
+        synchronized (lock) {
+            return buffered;
+        }
+    }
+
+    public int getApplied() {
+        synchronized (lock) {
+            return applied;
+        }
+    }
+
+    public int getDeduped() {
+        synchronized (lock) {
+            return deduped;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (lock) {
+            return "buffered " + buffered + ", applied " + applied + ", deduped " + deduped;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.nextcloud.talk.api.NcApi;
+import com.nextcloud.talk.api.helpers.api.ApiHelper;
+import com.nextcloud.talk.api.models.json.signaling.settings.IceServer;
+import com.nextcloud.talk.api.models.json.signaling.settings.Settings;
+import com.nextcloud.talk.api.models.json.signaling.settings.SignalingSettingsOverall;
+import com.nextcloud.talk.persistence.entities.UserEntity;
+
+import org.webrtc.PeerConnection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+
+/**
+ * Keeps the STUN/TURN servers of every account around so that starting a call does not have to wait
+ * for the signaling settings request.
+ * <p>
+ * Entries younger than {@link #TTL_MS} are used as they are. Older entries are still handed out while
+ * their TURN credentials are valid, but trigger a refresh in the background. Anything older than
+ * {@link #MAX_AGE_MS} is fetched again before the call can start.
+ */
+public class IceServersCache {
+    private static final String TAG = "IceServersCache";
+
+    // Spreed hands out TURN credentials that are valid for a day, stay well below that
+    static final long TTL_MS = TimeUnit.MINUTES.toMillis(30);
+    static final long MAX_AGE_MS = TimeUnit.HOURS.toMillis(12);
+
+    private final NcApi ncApi;
+    private final Scheduler scheduler;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<Long> refreshesInFlight = Collections.synchronizedSet(new HashSet<>());
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public IceServersCache(NcApi ncApi, Scheduler scheduler) {
+        this.ncApi = ncApi;
+        this.scheduler = scheduler;
+    }
+
+    public Observable<List<PeerConnection.IceServer>> getIceServers(UserEntity userEntity) {
+        Entry entry = entries.get(userEntity.getId());
+        long age = entry == null ? Long.MAX_VALUE : System.currentTimeMillis() - entry.fetchedAt;
+
+        if (age < MAX_AGE_MS) {
+            hits.incrementAndGet();
+            if (age >= TTL_MS) {
+                refresh(userEntity);
+            }
+            return Observable.just(entry.iceServers);
+        }
+
+        misses.incrementAndGet();
+        return fetch(userEntity);
+    }
+
+    /**
+     * Makes sure a fresh entry for the given account exists, e.g. when the calls list is shown.
+     */
+    public void prefetch(UserEntity userEntity) {
+        Entry entry = entries.get(userEntity.getId());
+        if (entry == null || System.currentTimeMillis() - entry.fetchedAt >= TTL_MS) {
+            refresh(userEntity);
+        }
+    }
+
+    /**
+     * Refreshes the entry for the given account in the background.
+     */
+    public void refresh(UserEntity userEntity) {
+        if (!refreshesInFlight.add(userEntity.getId())) {
+            return;
+        }
+
+        fetch(userEntity)
+                .subscribeOn(scheduler)
+                .doFinally(() -> refreshesInFlight.remove(userEntity.getId()))
+                .subscribe(iceServers -> {
+                }, throwable -> Log.d(TAG, "Failed to refresh the ICE servers"));
+    }
+
+    /**
+     * Drops the entry for the given account, e.g. when its TURN credentials may have been the reason ICE
+     * failed, so that the next call fetches them again.
+     */
+    public void invalidate(UserEntity userEntity) {
+        entries.remove(userEntity.getId());
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private Observable<List<PeerConnection.IceServer>> fetch(UserEntity userEntity) {
+        return ncApi.getSignalingSettings(ApiHelper.getCredentials(userEntity.getUsername(), userEntity.getToken()),
+                ApiHelper.getUrlForSignalingSettings(userEntity.getBaseUrl()))
+                .map(this::getIceServersFromSettings)
+                .doOnNext(iceServers -> entries.put(userEntity.getId(),
+                        new Entry(iceServers, System.currentTimeMillis())));
+    }
+
+    private List<PeerConnection.IceServer> getIceServersFromSettings(SignalingSettingsOverall
+                                                                             signalingSettingsOverall) {
+        List<PeerConnection.IceServer> iceServers = new ArrayList<>();
+        Settings settings = signalingSettingsOverall.getOcs().getSettings();
+        IceServer iceServer;
+
+        if (settings.getStunServers() != null) {
+            for (int i = 0; i < settings.getStunServers().size(); i++) {
+                iceServer = settings.getStunServers().get(i);
+                if (TextUtils.isEmpty(iceServer.getUsername()) || TextUtils.isEmpty(iceServer.getCredential())) {
+                    iceServers.add(new PeerConnection.IceServer(iceServer.getUrl()));
+                } else {
+                    iceServers.add(new PeerConnection.IceServer(iceServer.getUrl(),
+                            iceServer.getUsername(), iceServer.getCredential()));
+                }
+            }
+        }
+
+        if (settings.getTurnServers() != null) {
+            for (int i = 0; i < settings.getTurnServers().size(); i++) {
+                iceServer = settings.getTurnServers().get(i);
+                for (int j = 0; j < iceServer.getUrls().size(); j++) {
+                    if (TextUtils.isEmpty(iceServer.getUsername()) || TextUtils.isEmpty(iceServer.getCredential())) {
+                        iceServers.add(new PeerConnection.IceServer(iceServer.getUrls().get(j)));
+                    } else {
+                        iceServers.add(new PeerConnection.IceServer(iceServer.getUrls().get(j),
+                                iceServer.getUsername(), iceServer.getCredential()));
+                    }
+                }
+            }
+        }
+
+        return Collections.unmodifiableList(iceServers);
+    }
+
+    private static class Entry {
+        private final List<PeerConnection.IceServer> iceServers;
+        private final long fetchedAt;
+
+        private Entry(List<PeerConnection.IceServer> iceServers, long fetchedAt) {
+            this.iceServers = iceServers;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
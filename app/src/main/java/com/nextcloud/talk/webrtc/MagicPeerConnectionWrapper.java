@@ -21,6 +21,7 @@
 
 package com.nextcloud.talk.webrtc;
 
+import android.support.annotation.Nullable;
 import android.util.Log;
 
 import com.bluelinelabs.logansquare.LoganSquare;
@@ -28,7 +29,11 @@ import com.nextcloud.talk.api.models.json.signaling.DataChannelMessage;
 import com.nextcloud.talk.api.models.json.signaling.NCIceCandidate;
 import com.nextcloud.talk.events.MediaStreamEvent;
 import com.nextcloud.talk.events.PeerConnectionEvent;
+import com.nextcloud.talk.events.PeerStatsEvent;
 import com.nextcloud.talk.events.SessionDescriptionSendEvent;
+import com.nextcloud.talk.webrtc.sdp.MediaBandwidthProfile;
+import com.nextcloud.talk.webrtc.sdp.VideoCodecPolicy;
+import com.nextcloud.talk.webrtc.stats.PeerStatsCollector;
 
 import org.greenrobot.eventbus.EventBus;
 import org.webrtc.DataChannel;
@@ -40,35 +45,64 @@ import org.webrtc.PeerConnectionFactory;
 import org.webrtc.RtpReceiver;
 import org.webrtc.SdpObserver;
 import org.webrtc.SessionDescription;
+import org.webrtc.StatsReport;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class MagicPeerConnectionWrapper {
     private static String TAG = "MagicPeerConnectionWrapper";
-    List<IceCandidate> iceCandidates = new ArrayList<>();
+    private final IceCandidateBuffer iceCandidateBuffer = new IceCandidateBuffer();
     private PeerConnection peerConnection;
     private List<PeerConnection.IceServer> iceServers;
     private String sessionId;
     private String localSession;
     private String nick;
-    private MediaConstraints mediaConstraints;
+    private volatile MediaConstraints mediaConstraints;
     private DataChannel magicDataChannel;
     private MagicSdpObserver magicSdpObserver;
-
-    private boolean remoteVideoOn;
-    private boolean remoteAudioOn;
+    private final VideoCodecPolicy videoCodecPolicy;
+    private volatile MediaBandwidthProfile mediaBandwidthProfile;
+    private PeerStatsCollector peerStatsCollector;
+
+    // status messages are tiny and sent synchronously, so one buffer per connection serves them all
+    private final Object sendLock = new Object();
+    private final ByteBuffer sendBuffer = ByteBuffer.allocate(StatusFrameCodec.MAX_MESSAGE_SIZE);
+    private final DataChannel.Buffer binarySendBuffer = new DataChannel.Buffer(sendBuffer, true);
+    private final DataChannel.Buffer textSendBuffer = new DataChannel.Buffer(sendBuffer, false);
+    private boolean statusFramesAnnounced;
+    private volatile boolean peerSupportsStatusFrames;
+
+    // "<width>x<height>" of the tile the video is drawn in, on our side and on the peer's side
+    private volatile String localTileSize;
+    private volatile int remoteTileWidth = CaptureFormatGovernor.DISPLAY_SIZE_UNKNOWN;
+    private volatile int remoteTileHeight = CaptureFormatGovernor.DISPLAY_SIZE_UNKNOWN;
+
+    // until the peer says otherwise, like the tiles show it
+    private volatile boolean remoteVideoOn = true;
+    private volatile boolean remoteAudioOn = true;
+    // our own state, sent whenever the status channel (re)connects
+    private volatile boolean localAudioOn = true;
+    private volatile boolean localVideoOn = true;
 
     private boolean hasInitiated;
+    // an ICE restart asked for while an offer/answer exchange was going on, run once it is done
+    private volatile boolean iceRestartPending;
 
     public MagicPeerConnectionWrapper(PeerConnectionFactory peerConnectionFactory,
                                       List<PeerConnection.IceServer> iceServerList,
                                       MediaConstraints mediaConstraints,
-                                      String sessionId, String localSession, MediaStream mediaStream) {
+                                      String sessionId, String localSession, MediaStream mediaStream,
+                                      VideoCodecPolicy videoCodecPolicy,
+                                      MediaBandwidthProfile mediaBandwidthProfile) {
 
         this.iceServers = iceServerList;
+        this.videoCodecPolicy = videoCodecPolicy;
+        this.mediaBandwidthProfile = mediaBandwidthProfile;
         this.localSession = localSession;
 
         peerConnection = peerConnectionFactory.createPeerConnection(iceServerList, mediaConstraints,
@@ -77,6 +111,7 @@ public class MagicPeerConnectionWrapper {
 
         this.sessionId = sessionId;
         this.mediaConstraints = mediaConstraints;
+        peerStatsCollector = new PeerStatsCollector(sessionId);
 
         magicSdpObserver = new MagicSdpObserver();
         hasInitiated = sessionId.compareTo(localSession) < 0;
@@ -89,14 +124,104 @@ public class MagicPeerConnectionWrapper {
         }
     }
 
+    public MediaBandwidthProfile getMediaBandwidthProfile() {
+        return mediaBandwidthProfile;
+    }
+
+    /**
+     * Takes effect with the next offer or answer.
+     */
+    public void setMediaBandwidthProfile(MediaBandwidthProfile mediaBandwidthProfile) {
+        this.mediaBandwidthProfile = mediaBandwidthProfile;
+    }
+
+    /**
+     * Takes a stats sample and publishes it as a {@link PeerStatsEvent} once WebRTC delivers it.
+     */
+    public void sampleStats() {
+        if (peerConnection == null) {
+            return;
+        }
+
+        peerConnection.getStats(statsReports -> {
+            List<PeerStatsCollector.Report> reports = new ArrayList<>(statsReports.length);
+            for (StatsReport statsReport : statsReports) {
+                Map<String, String> values = new HashMap<>(statsReport.values.length);
+                for (StatsReport.Value value : statsReport.values) {
+                    values.put(value.name, value.value);
+                }
+                reports.add(new PeerStatsCollector.Report(statsReport.type, values));
+            }
+
+            EventBus.getDefault().post(new PeerStatsEvent(peerStatsCollector.collect(System.currentTimeMillis(),
+                    reports)));
+        }, null);
+    }
+
+    /**
+     * Sends a new offer with the given constraints, which are also used for any answer from now on.
+     */
+    public void renegotiate(MediaConstraints mediaConstraints) {
+        this.mediaConstraints = mediaConstraints;
+        if (peerConnection != null) {
+            peerConnection.createOffer(magicSdpObserver, mediaConstraints);
+        }
+    }
+
+    /**
+     * Renegotiates the connection with fresh ICE credentials, so that it can recover on a new network
+     * without being torn down. A new offer can only be made in the stable state, so while an exchange
+     * is still going on the restart is held back until it is done.
+     */
+    public void restartIce() {
+        if (peerConnection == null) {
+            return;
+        }
+
+        if (peerConnection.signalingState() != PeerConnection.SignalingState.STABLE) {
+            Log.d(TAG, "Signaling state of " + sessionId + " is " + peerConnection.signalingState()
+                    + ", restarting ICE once it is stable");
+            iceRestartPending = true;
+            return;
+        }
+
+        iceRestartPending = false;
+        MediaConstraints iceRestartConstraints = new MediaConstraints();
+        iceRestartConstraints.mandatory.addAll(mediaConstraints.mandatory);
+        iceRestartConstraints.optional.addAll(mediaConstraints.optional);
+        iceRestartConstraints.mandatory.add(new MediaConstraints.KeyValuePair("IceRestart", "true"));
+        peerConnection.createOffer(magicSdpObserver, iceRestartConstraints);
+    }
+
+    /**
+     * Applies the candidates that arrived before the remote description, once it is set.
+     */
     public void drainIceCandidates() {
+        if (peerConnection == null || peerConnection.getRemoteDescription() == null) {
+            return;
+        }
 
-        for (IceCandidate iceCandidate : iceCandidates) {
-            peerConnection.addIceCandidate(iceCandidate);
+        List<IceCandidate> bufferedCandidates = iceCandidateBuffer.drain();
+        for (int i = 0; i < bufferedCandidates.size(); i++) {
+            peerConnection.addIceCandidate(bufferedCandidates.get(i));
+        }
+
+        if (!bufferedCandidates.isEmpty()) {
+            Log.d(TAG, "Applied " + bufferedCandidates.size() + " buffered ICE candidates for " + sessionId);
         }
+    }
 
-        iceCandidates = new ArrayList<>();
+    /**
+     * Applies a remote offer or answer. Candidates are buffered again until it is set, as they may
+     * already belong to it.
+     */
+    public void setRemoteDescription(SessionDescription sessionDescription) {
+        iceCandidateBuffer.reset();
+        peerConnection.setRemoteDescription(magicSdpObserver, sessionDescription);
+    }
 
+    public IceCandidateBuffer getIceCandidateBuffer() {
+        return iceCandidateBuffer;
     }
 
     public MagicSdpObserver getMagicSdpObserver() {
@@ -104,23 +229,151 @@ public class MagicPeerConnectionWrapper {
     }
 
     public void addCandidate(IceCandidate iceCandidate) {
-        if (peerConnection.getRemoteDescription() != null) {
+        if (iceCandidateBuffer.add(iceCandidate)) {
             peerConnection.addIceCandidate(iceCandidate);
-        } else {
-            iceCandidates.add(iceCandidate);
         }
     }
 
     public void sendChannelData(DataChannelMessage dataChannelMessage) {
+        DataChannel dataChannel = magicDataChannel;
+        if (dataChannel == null) {
+            return;
+        }
+
         ByteBuffer buffer = null;
         try {
             buffer = ByteBuffer.wrap(LoganSquare.serialize(dataChannelMessage).getBytes());
-            magicDataChannel.send(new DataChannel.Buffer(buffer, false));
+            dataChannel.send(new DataChannel.Buffer(buffer, false));
         } catch (IOException e) {
             Log.d(TAG, "Failed to send channel data");
         }
     }
 
+    /**
+     * Tells the peer about local audio and video changes, coalesced into a single binary frame if the
+     * peer understands those.
+     *
+     * @param audioOn the new audio state, or null if it did not change
+     * @param videoOn the new video state, or null if it did not change
+     */
+    public void sendStatus(@Nullable Boolean audioOn, @Nullable Boolean videoOn) {
+        if (audioOn != null) {
+            localAudioOn = audioOn;
+        }
+        if (videoOn != null) {
+            localVideoOn = videoOn;
+        }
+
+        DataChannel dataChannel = magicDataChannel;
+        if (dataChannel == null || dataChannel.state() != DataChannel.State.OPEN) {
+            return;
+        }
+
+        synchronized (sendLock) {
+            announceStatusFrames(dataChannel);
+
+            if (peerSupportsStatusFrames) {
+                StatusFrameCodec.encodeFrame(sendBuffer, audioOn, videoOn);
+                dataChannel.send(binarySendBuffer);
+                return;
+            }
+
+            if (videoOn != null) {
+                StatusFrameCodec.encodeVideoJson(sendBuffer, videoOn);
+                dataChannel.send(textSendBuffer);
+            }
+
+            if (audioOn != null) {
+                StatusFrameCodec.encodeAudioJson(sendBuffer, audioOn);
+                dataChannel.send(textSendBuffer);
+            }
+        }
+    }
+
+    /**
+     * Sets our own audio and video state without sending it, for a connection whose status channel is
+     * not open yet.
+     */
+    public void setLocalMediaState(boolean audioOn, boolean videoOn) {
+        localAudioOn = audioOn;
+        localVideoOn = videoOn;
+    }
+
+    /**
+     * Tells the peer how large its video is drawn here, so it does not capture more than that.
+     */
+    public void setLocalTileSize(int width, int height) {
+        localTileSize = width + "x" + height;
+        sendLocalTileSize();
+    }
+
+    private void sendLocalTileSize() {
+        DataChannel dataChannel = magicDataChannel;
+        String tileSize = localTileSize;
+        if (tileSize != null && dataChannel != null && dataChannel.state() == DataChannel.State.OPEN) {
+            DataChannelMessage dataChannelMessage = new DataChannelMessage("tileSize");
+            dataChannelMessage.setPayload(tileSize);
+            sendChannelData(dataChannelMessage);
+        }
+    }
+
+    /**
+     * @return the width of the tile the peer shows our video in, or -1 if it did not say
+     */
+    public int getRemoteTileWidth() {
+        return remoteTileWidth;
+    }
+
+    public int getRemoteTileHeight() {
+        return remoteTileHeight;
+    }
+
+    private void onRemoteTileSize(String tileSize) {
+        int separator = tileSize == null ? -1 : tileSize.indexOf('x');
+        if (separator == -1) {
+            return;
+        }
+
+        try {
+            int width = Integer.parseInt(tileSize.substring(0, separator));
+            int height = Integer.parseInt(tileSize.substring(separator + 1));
+            remoteTileWidth = width;
+            remoteTileHeight = height;
+            EventBus.getDefault().post(new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType
+                    .TILE_SIZE_CHANGE, sessionId, null, null));
+        } catch (NumberFormatException e) {
+            Log.d(TAG, "Received an invalid tile size over " + TAG + " " + sessionId);
+        }
+    }
+
+    private void announceStatusFrames(DataChannel dataChannel) {
+        synchronized (sendLock) {
+            if (!statusFramesAnnounced) {
+                statusFramesAnnounced = true;
+                StatusFrameCodec.encodeCapabilityJson(sendBuffer);
+                dataChannel.send(textSendBuffer);
+            }
+        }
+    }
+
+    private void onRemoteStatus(String type) {
+        if ("audioOn".equals(type) || "audioOff".equals(type)) {
+            remoteAudioOn = "audioOn".equals(type);
+            EventBus.getDefault().post(new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType
+                    .AUDIO_CHANGE, sessionId, null, remoteAudioOn));
+        } else if ("videoOn".equals(type) || "videoOff".equals(type)) {
+            remoteVideoOn = "videoOn".equals(type);
+            EventBus.getDefault().post(new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType
+                    .VIDEO_CHANGE, sessionId, null, remoteVideoOn));
+        } else if (StatusFrameCodec.CAPABILITY_TYPE.equals(type)) {
+            peerSupportsStatusFrames = true;
+            DataChannel dataChannel = magicDataChannel;
+            if (dataChannel != null) {
+                announceStatusFrames(dataChannel);
+            }
+        }
+    }
+
     public PeerConnection getPeerConnection() {
         return peerConnection;
     }
@@ -133,6 +386,14 @@ public class MagicPeerConnectionWrapper {
         this.sessionId = sessionId;
     }
 
+    public boolean isRemoteVideoOn() {
+        return remoteVideoOn;
+    }
+
+    public boolean isRemoteAudioOn() {
+        return remoteAudioOn;
+    }
+
     public String getNick() {
         if (nick != null) {
             return nick;
@@ -156,20 +417,42 @@ public class MagicPeerConnectionWrapper {
         public void onStateChange() {
             if (magicDataChannel.state().equals(DataChannel.State.OPEN) &&
                     magicDataChannel.label().equals("status")) {
-                sendChannelData(new DataChannelMessage("videoOn"));
-                sendChannelData(new DataChannelMessage("audioOn"));
+                sendStatus(localAudioOn, localVideoOn);
+                sendLocalTileSize();
             }
         }
 
         @Override
         public void onMessage(DataChannel.Buffer buffer) {
+            ByteBuffer data = buffer.data;
+
             if (buffer.binary) {
-                Log.d(TAG, "Received binary msg over " + TAG + " " + sessionId);
+                int flags = StatusFrameCodec.decodeFrame(data);
+                if (flags == -1) {
+                    Log.d(TAG, "Received unknown binary msg over " + TAG + " " + sessionId);
+                    return;
+                }
+
+                peerSupportsStatusFrames = true;
+                Boolean videoOn = StatusFrameCodec.getVideoOn(flags);
+                if (videoOn != null) {
+                    onRemoteStatus(videoOn ? "videoOn" : "videoOff");
+                }
+                Boolean audioOn = StatusFrameCodec.getAudioOn(flags);
+                if (audioOn != null) {
+                    onRemoteStatus(audioOn ? "audioOn" : "audioOff");
+                }
                 return;
             }
 
-            ByteBuffer data = buffer.data;
-            final byte[] bytes = new byte[data.capacity()];
+            // status changes are by far the most common messages, recognize them without copying
+            String statusType = StatusFrameCodec.matchJson(data);
+            if (statusType != null) {
+                onRemoteStatus(statusType);
+                return;
+            }
+
+            final byte[] bytes = new byte[data.remaining()];
             data.get(bytes);
             String strData = new String(bytes);
             Log.d(TAG, "Got msg: " + strData + " over " + TAG + " " + sessionId);
@@ -181,22 +464,10 @@ public class MagicPeerConnectionWrapper {
                     nick = dataChannelMessage.getPayload();
                     EventBus.getDefault().post(new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType
                             .NICK_CHANGE, sessionId, nick, null));
-                } else if ("audioOn".equals(dataChannelMessage.getType())) {
-                    remoteAudioOn = true;
-                    EventBus.getDefault().post(new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType
-                            .AUDIO_CHANGE, sessionId, null, remoteAudioOn));
-                } else if ("audioOff".equals(dataChannelMessage.getType())) {
-                    remoteAudioOn = false;
-                    EventBus.getDefault().post(new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType
-                            .AUDIO_CHANGE, sessionId, null, remoteAudioOn));
-                } else if ("videoOn".equals(dataChannelMessage.getType())) {
-                    remoteVideoOn = true;
-                    EventBus.getDefault().post(new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType
-                            .VIDEO_CHANGE, sessionId, null, remoteVideoOn));
-                } else if ("videoOff".equals(dataChannelMessage.getType())) {
-                    remoteVideoOn = false;
-                    EventBus.getDefault().post(new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType
-                            .VIDEO_CHANGE, sessionId, null, remoteVideoOn));
+                } else if ("tileSize".equals(dataChannelMessage.getType())) {
+                    onRemoteTileSize(dataChannelMessage.getPayload());
+                } else if (dataChannelMessage.getType() != null) {
+                    onRemoteStatus(dataChannelMessage.getType());
                 }
             } catch (IOException e) {
                 Log.d(TAG, "Failed to parse data channel message");
@@ -210,16 +481,24 @@ public class MagicPeerConnectionWrapper {
         @Override
         public void onSignalingChange(PeerConnection.SignalingState signalingState) {
             if (signalingState.equals(PeerConnection.SignalingState.CLOSED)) {
+                iceRestartPending = false;
                 EventBus.getDefault().post(new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType
                         .CLOSE_PEER, sessionId, null, null));
+            } else if (signalingState.equals(PeerConnection.SignalingState.STABLE) && iceRestartPending) {
+                restartIce();
             }
         }
 
         @Override
         public void onIceConnectionChange(PeerConnection.IceConnectionState iceConnectionState) {
-            if (iceConnectionState.equals(PeerConnection.IceConnectionState.CONNECTED) && hasInitiated) {
-                sendChannelData(new DataChannelMessage("videoOn"));
-                sendChannelData(new DataChannelMessage("audioOn"));
+            if (iceConnectionState.equals(PeerConnection.IceConnectionState.CONNECTED)) {
+                EventBus.getDefault().post(new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType
+                        .ICE_CONNECTED, sessionId, null, null));
+
+                if (hasInitiated) {
+                    sendStatus(localAudioOn, localVideoOn);
+                    sendLocalTileSize();
+                }
             } else if (iceConnectionState.equals(PeerConnection.IceConnectionState.FAILED)) {
                 EventBus.getDefault().post(new PeerConnectionEvent(PeerConnectionEvent.PeerConnectionEventType
                         .CLOSE_PEER, sessionId, null, null));
@@ -295,9 +574,8 @@ public class MagicPeerConnectionWrapper {
 
         @Override
         public void onCreateSuccess(SessionDescription sessionDescription) {
-            String sessionDescriptionStringWithPreferredCodec = MagicWebRTCUtils.preferCodec
-                    (sessionDescription.description,
-                            "VP8", false);
+            String sessionDescriptionStringWithPreferredCodec = MagicWebRTCUtils.rewriteSessionDescription
+                    (sessionDescription.description, videoCodecPolicy, mediaBandwidthProfile);
 
             SessionDescription sessionDescriptionWithPreferredCodec = new SessionDescription(
                     sessionDescription.type,
@@ -311,13 +589,12 @@ public class MagicPeerConnectionWrapper {
         @Override
         public void onSetSuccess() {
             if (peerConnection != null) {
-                if (peerConnection.getLocalDescription() == null) {
+                // also covers offers renegotiating an established connection, e.g. an ICE restart
+                if (peerConnection.signalingState() == PeerConnection.SignalingState.HAVE_REMOTE_OFFER) {
                     peerConnection.createAnswer(magicSdpObserver, mediaConstraints);
                 }
 
-                if (peerConnection.getRemoteDescription() != null) {
-                    drainIceCandidates();
-                }
+                drainIceCandidates();
             }
         }
     }
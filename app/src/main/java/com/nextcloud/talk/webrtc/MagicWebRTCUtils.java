@@ -31,97 +31,98 @@
 
 package com.nextcloud.talk.webrtc;
 
-import android.util.Log;
+import android.app.ActivityManager;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.os.Build;
+import android.support.annotation.Nullable;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Iterator;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import com.evernote.android.job.JobRequest;
+import com.evernote.android.job.util.Device;
+import com.nextcloud.talk.webrtc.sdp.MediaBandwidthProfile;
+import com.nextcloud.talk.webrtc.sdp.SdpSession;
+import com.nextcloud.talk.webrtc.sdp.VideoCodecPolicy;
 
 public class MagicWebRTCUtils {
-    private static final String TAG = "MagicWebRTCUtils";
-
-    public static String preferCodec(String sdpDescription, String codec, boolean isAudio) {
-        final String[] lines = sdpDescription.split("\r\n");
-        final int mLineIndex = findMediaDescriptionLine(isAudio, lines);
-        if (mLineIndex == -1) {
-            Log.w(TAG, "No mediaDescription line, so can't prefer " + codec);
-            return sdpDescription;
-        }
-        // A list with all the payload types with name |codec|. The payload types are integers in the
-        // range 96-127, but they are stored as strings here.
-        final List<String> codecPayloadTypes = new ArrayList<String>();
-        // a=rtpmap:<payload type> <encoding name>/<clock rate> [/<encoding parameters>]
-        final Pattern codecPattern = Pattern.compile("^a=rtpmap:(\\d+) " + codec + "(/\\d+)+[\r]?$");
-        for (int i = 0; i < lines.length; ++i) {
-            Matcher codecMatcher = codecPattern.matcher(lines[i]);
-            if (codecMatcher.matches()) {
-                codecPayloadTypes.add(codecMatcher.group(1));
-            }
-        }
-        if (codecPayloadTypes.isEmpty()) {
-            Log.w(TAG, "No payload types with name " + codec);
-            return sdpDescription;
+
+    /**
+     * Applies all of our rewrites, codec order and bandwidth profile, to a local or remote
+     * description in a single parse.
+     */
+    public static String rewriteSessionDescription(String sdpDescription, VideoCodecPolicy videoCodecPolicy,
+                                                   MediaBandwidthProfile mediaBandwidthProfile) {
+        SdpSession sdpSession = SdpSession.parse(sdpDescription);
+        videoCodecPolicy.apply(sdpSession);
+        mediaBandwidthProfile.apply(sdpSession);
+        return sdpSession.serialize();
+    }
+
+    public static CaptureFormatGovernor.DeviceClass getDeviceClass(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        if (activityManager == null) {
+            return CaptureFormatGovernor.DeviceClass.MID_RANGE;
         }
 
-        final String newMLine = movePayloadTypesToFront(codecPayloadTypes, lines[mLineIndex]);
-        if (newMLine == null) {
-            return sdpDescription;
+        ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+        activityManager.getMemoryInfo(memoryInfo);
+        long totalMemoryMb = memoryInfo.totalMem / (1024 * 1024);
+
+        if (activityManager.isLowRamDevice() || processors <= 2 || totalMemoryMb < 2048) {
+            return CaptureFormatGovernor.DeviceClass.LOW_END;
+        } else if (processors >= 8 && totalMemoryMb >= 4096) {
+            return CaptureFormatGovernor.DeviceClass.HIGH_END;
         }
-        Log.d(TAG, "Change media description from: " + lines[mLineIndex] + " to " + newMLine);
-        lines[mLineIndex] = newMLine;
-        return joinString(Arrays.asList(lines), "\r\n", true /* delimiterAtEnd */);
+
+        return CaptureFormatGovernor.DeviceClass.MID_RANGE;
     }
 
     /**
-     * Returns the line number containing "m=audio|video", or -1 if no such line exists.
+     * @return the upstream bandwidth the system estimates for the active network, or
+     * {@link CaptureFormatGovernor#UPLINK_UNKNOWN}
      */
-    private static int findMediaDescriptionLine(boolean isAudio, String[] sdpLines) {
-        final String mediaDescription = isAudio ? "m=audio " : "m=video ";
-        for (int i = 0; i < sdpLines.length; ++i) {
-            if (sdpLines[i].startsWith(mediaDescription)) {
-                return i;
-            }
+    public static long getUplinkKbps(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return CaptureFormatGovernor.UPLINK_UNKNOWN;
         }
-        return -1;
-    }
 
-    private static String movePayloadTypesToFront(List<String> preferredPayloadTypes, String mLine) {
-        // The format of the media description line should be: m=<media> <port> <proto> <fmt> ...
-        final List<String> origLineParts = Arrays.asList(mLine.split(" "));
-        if (origLineParts.size() <= 3) {
-            Log.e(TAG, "Wrong SDP media description format: " + mLine);
-            return null;
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(
+                Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) {
+            return CaptureFormatGovernor.UPLINK_UNKNOWN;
         }
-        final List<String> header = origLineParts.subList(0, 3);
-        final List<String> unpreferredPayloadTypes =
-                new ArrayList<String>(origLineParts.subList(3, origLineParts.size()));
-        unpreferredPayloadTypes.removeAll(preferredPayloadTypes);
-        // Reconstruct the line with |preferredPayloadTypes| moved to the beginning of the payload
-        // types.
-        final List<String> newLineParts = new ArrayList<String>();
-        newLineParts.addAll(header);
-        newLineParts.addAll(preferredPayloadTypes);
-        newLineParts.addAll(unpreferredPayloadTypes);
-        return joinString(newLineParts, " ", false /* delimiterAtEnd */);
-    }
 
-    private static String joinString(
-            Iterable<? extends CharSequence> s, String delimiter, boolean delimiterAtEnd) {
-        Iterator<? extends CharSequence> iter = s.iterator();
-        if (!iter.hasNext()) {
-            return "";
-        }
-        StringBuilder buffer = new StringBuilder(iter.next());
-        while (iter.hasNext()) {
-            buffer.append(delimiter).append(iter.next());
-        }
-        if (delimiterAtEnd) {
-            buffer.append(delimiter);
+        Network network = connectivityManager.getActiveNetwork();
+        NetworkCapabilities networkCapabilities = network == null ? null :
+                connectivityManager.getNetworkCapabilities(network);
+        if (networkCapabilities == null || networkCapabilities.getLinkUpstreamBandwidthKbps() <= 0) {
+            return CaptureFormatGovernor.UPLINK_UNKNOWN;
         }
-        return buffer.toString();
+
+        return networkCapabilities.getLinkUpstreamBandwidthKbps();
+    }
+
+    public static MediaBandwidthProfile getMediaBandwidthProfile(Context context) {
+        boolean metered = !JobRequest.NetworkType.UNMETERED.equals(Device.getNetworkType(context));
+        return MediaBandwidthProfile.select(metered, getUplinkKbps(context));
     }
 
+    /**
+     * @return something that identifies the active network (type and SSID or APN), null when offline
+     */
+    @Nullable
+    public static String getActiveNetworkKey(Context context) {
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(
+                Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connectivityManager == null ? null : connectivityManager.getActiveNetworkInfo();
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            return null;
+        }
+
+        return networkInfo.getType() + ":" + networkInfo.getExtraInfo();
+    }
 }
@@ -0,0 +1,89 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Peer connection wrappers of a call, keyed by the remote session id. Lookups are lock-free and
+ * creation is atomic, so signaling handlers on different threads never end up with two wrappers
+ * for the same session.
+ */
+public class PeerRegistry {
+    private final Map<String, MagicPeerConnectionWrapper> magicPeerConnectionWrappers = new ConcurrentHashMap<>();
+    private final Object creationLock = new Object();
+
+    @Nullable
+    public MagicPeerConnectionWrapper get(String sessionId) {
+        return magicPeerConnectionWrappers.get(sessionId);
+    }
+
+    public MagicPeerConnectionWrapper getOrCreate(String sessionId, WrapperFactory wrapperFactory) {
+        MagicPeerConnectionWrapper magicPeerConnectionWrapper = magicPeerConnectionWrappers.get(sessionId);
+        if (magicPeerConnectionWrapper != null) {
+            return magicPeerConnectionWrapper;
+        }
+
+        // ConcurrentHashMap#computeIfAbsent needs API 24
+        synchronized (creationLock) {
+            magicPeerConnectionWrapper = magicPeerConnectionWrappers.get(sessionId);
+            if (magicPeerConnectionWrapper == null) {
+                magicPeerConnectionWrapper = wrapperFactory.create(sessionId);
+                magicPeerConnectionWrappers.put(sessionId, magicPeerConnectionWrapper);
+            }
+            return magicPeerConnectionWrapper;
+        }
+    }
+
+    /**
+     * @return the removed wrapper, or null if another thread removed it first
+     */
+    @Nullable
+    public MagicPeerConnectionWrapper remove(String sessionId) {
+        return magicPeerConnectionWrappers.remove(sessionId);
+    }
+
+    public boolean contains(String sessionId) {
+        return magicPeerConnectionWrappers.containsKey(sessionId);
+    }
+
+    public List<MagicPeerConnectionWrapper> getPeerConnectionWrappers() {
+        return new ArrayList<>(magicPeerConnectionWrappers.values());
+    }
+
+    public List<String> getSessionIds() {
+        return new ArrayList<>(magicPeerConnectionWrappers.keySet());
+    }
+
+    public int size() {
+        return magicPeerConnectionWrappers.size();
+    }
+
+    public interface WrapperFactory {
+        MagicPeerConnectionWrapper create(String sessionId);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Book keeping for reconnecting a call in place after a network change. A reconnection starts when
+ * the network goes away or changes and ends once every peer that got an ICE restart is connected
+ * again, or when the caller gives up and falls back to rejoining the call.
+ */
+public class ReconnectionTracker {
+    private final Set<String> pendingSessionIds = new HashSet<>();
+
+    private boolean reconnecting;
+    private long restartStartedAt = -1;
+
+    private long attempts;
+    private long successes;
+    private long fallbacks;
+    private long totalReconnectMs;
+    private long lastReconnectMs = -1;
+
+    /**
+     * @return true if this starts a new reconnection, false if one is already running
+     */
+    public synchronized boolean start() {
+        if (reconnecting) {
+            return false;
+        }
+
+        reconnecting = true;
+        restartStartedAt = -1;
+        pendingSessionIds.clear();
+        attempts++;
+        return true;
+    }
+
+    /**
+     * Marks the ICE restart of the given peers, the reconnect latency is measured from here.
+     *
+     * @return true if there are no peers to wait for, which completes the reconnection right away
+     */
+    public synchronized boolean restartStarted(Collection<String> sessionIds, long now) {
+        restartStartedAt = now;
+        pendingSessionIds.clear();
+        pendingSessionIds.addAll(sessionIds);
+
+        if (reconnecting && pendingSessionIds.isEmpty()) {
+            reconnecting = false;
+            successes++;
+            lastReconnectMs = 0;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return true if this was the last peer the reconnection was waiting for
+     */
+    public synchronized boolean peerConnected(String sessionId, long now) {
+        if (!reconnecting || restartStartedAt == -1 || !pendingSessionIds.remove(sessionId)
+                || !pendingSessionIds.isEmpty()) {
+            return false;
+        }
+
+        reconnecting = false;
+        successes++;
+        lastReconnectMs = now - restartStartedAt;
+        totalReconnectMs += lastReconnectMs;
+        return true;
+    }
+
+    /**
+     * A peer that went away during the reconnection is not waited for.
+     */
+    public synchronized boolean peerRemoved(String sessionId, long now) {
+        return pendingSessionIds.contains(sessionId) && peerConnected(sessionId, now);
+    }
+
+    /**
+     * @return true if a reconnection was running and has now been given up on
+     */
+    public synchronized boolean fallBack() {
+        if (!reconnecting) {
+            return false;
+        }
+
+        reconnecting = false;
+        pendingSessionIds.clear();
+        fallbacks++;
+        return true;
+    }
+
+    public synchronized boolean isReconnecting() {
+        return reconnecting;
+    }
+
+    public synchronized long getAttempts() {
+        return attempts;
+    }
+
+    public synchronized long getSuccesses() {
+        return successes;
+    }
+
+    public synchronized long getFallbacks() {
+        return fallbacks;
+    }
+
+    /**
+     * @return time from the ICE restart until every peer was connected again, -1 if there was none yet
+     */
+    public synchronized long getLastReconnectMs() {
+        return lastReconnectMs;
+    }
+
+    public synchronized long getAverageReconnectMs() {
+        return successes == 0 ? -1 : totalReconnectMs / successes;
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.RelativeLayout;
+import android.widget.TextView;
+
+import com.nextcloud.talk.R;
+
+import org.webrtc.EglBase;
+import org.webrtc.RendererCommon;
+import org.webrtc.SurfaceViewRenderer;
+import org.webrtc.VideoRenderer;
+import org.webrtc.VideoTrack;
+
+import java.util.ArrayDeque;
+
+/**
+ * Keeps the tiles of participants that left around, with their already initialized
+ * {@link SurfaceViewRenderer}, so the next stream can reuse them instead of inflating a new tile and
+ * setting up another EGL context and render thread on the UI thread.
+ * <p>
+ * Only meant to be used from the UI thread.
+ */
+public class RemoteRendererPool {
+    private static final String TAG = "RemoteRendererPool";
+
+    public static final int DEFAULT_MAX_POOLED = 4;
+
+    private final LayoutInflater layoutInflater;
+    private final EglBase.Context eglBaseContext;
+    private final int maxPooled;
+    private final ArrayDeque<Tile> pooledTiles = new ArrayDeque<>();
+
+    private long hits;
+    private long misses;
+    private long released;
+
+    public RemoteRendererPool(LayoutInflater layoutInflater, EglBase.Context eglBaseContext, int maxPooled) {
+        this.layoutInflater = layoutInflater;
+        this.eglBaseContext = eglBaseContext;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Hands out a tile showing the given track, tagged with the session id.
+     */
+    public Tile acquire(ViewGroup parent, String sessionId, VideoTrack videoTrack) {
+        Tile tile = pooledTiles.poll();
+        if (tile != null) {
+            hits++;
+        } else {
+            misses++;
+            tile = createTile(parent);
+        }
+
+        tile.getView().setTag(sessionId);
+        tile.attach(videoTrack);
+        return tile;
+    }
+
+    /**
+     * Takes a tile back after it has been removed from its parent. Its renderer is taken off the track
+     * it was showing, which does nothing if that track was disposed, as that already dropped it.
+     */
+    public void recycle(Tile tile) {
+        tile.detach();
+
+        if (pooledTiles.size() < maxPooled) {
+            tile.reset();
+            pooledTiles.push(tile);
+        } else {
+            tile.getSurfaceViewRenderer().release();
+            released++;
+        }
+    }
+
+    /**
+     * Releases all pooled renderers, e.g. when the call ends.
+     */
+    public void clear() {
+        Tile tile;
+        while ((tile = pooledTiles.poll()) != null) {
+            tile.getSurfaceViewRenderer().release();
+            released++;
+        }
+
+        Log.d(TAG, "Renderer pool served " + (hits + misses) + " tiles with a hit rate of "
+                + Math.round(getHitRate() * 100) + "%, released " + released + " renderers");
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public int getPooledCount() {
+        return pooledTiles.size();
+    }
+
+    private Tile createTile(ViewGroup parent) {
+        RelativeLayout relativeLayout = (RelativeLayout) layoutInflater.inflate(R.layout.surface_renderer, parent,
+                false);
+        SurfaceViewRenderer surfaceViewRenderer = relativeLayout.findViewById(R.id.surface_view);
+        surfaceViewRenderer.setMirror(false);
+        surfaceViewRenderer.init(eglBaseContext, null);
+        surfaceViewRenderer.setZOrderMediaOverlay(true);
+        surfaceViewRenderer.setEnableHardwareScaler(true);
+        surfaceViewRenderer.setScalingType(RendererCommon.ScalingType.SCALE_ASPECT_FIT);
+        return new Tile(relativeLayout, surfaceViewRenderer);
+    }
+
+    public static class Tile {
+        private final RelativeLayout view;
+        private final SurfaceViewRenderer surfaceViewRenderer;
+        private final VideoBinding videoBinding;
+
+        Tile(RelativeLayout view, SurfaceViewRenderer surfaceViewRenderer) {
+            this.view = view;
+            this.surfaceViewRenderer = surfaceViewRenderer;
+            videoBinding = new VideoBinding(surfaceViewRenderer);
+        }
+
+        public RelativeLayout getView() {
+            return view;
+        }
+
+        public SurfaceViewRenderer getSurfaceViewRenderer() {
+            return surfaceViewRenderer;
+        }
+
+        void attach(VideoTrack videoTrack) {
+            videoBinding.attach(videoTrack);
+        }
+
+        void detach() {
+            videoBinding.detach();
+        }
+
+        public boolean isVideoRendered() {
+            return videoBinding.isVideoRendered();
+        }
+
+        /**
+         * Shows the video, or disables the track, drops its frames before they reach the renderer and
+         * shows an avatar instead. Hiding the surface also frees its EGL surface until it is shown again.
+         */
+        public void setVideoRendered(boolean videoRendered) {
+            if (!videoBinding.setVideoRendered(videoRendered)) {
+                return;
+            }
+
+            surfaceViewRenderer.setVisibility(videoRendered ? View.VISIBLE : View.INVISIBLE);
+            view.findViewById(R.id.remote_avatar).setVisibility(videoRendered ? View.GONE : View.VISIBLE);
+            if (!videoRendered) {
+                surfaceViewRenderer.clearImage();
+            }
+        }
+
+        void reset() {
+            setVideoRendered(true);
+            view.setTag(null);
+            surfaceViewRenderer.clearImage();
+            ((TextView) view.findViewById(R.id.peer_nick_text_view)).setText(null);
+            ((ImageView) view.findViewById(R.id.remote_video_off)).setVisibility(View.INVISIBLE);
+            ((ImageView) view.findViewById(R.id.remote_audio_off)).setVisibility(View.INVISIBLE);
+        }
+    }
+
+    /**
+     * The track side of a tile: feeds the track into the renderer and pauses it while the tile is not
+     * rendered. A track always leaves attach() enabled or disabled to match the tile, since the tile
+     * that paused it before, e.g. in a stopped activity that was recreated since, is gone.
+     */
+    static class VideoBinding {
+        private final VideoRenderer.Callbacks target;
+        private FrameGate frameGate;
+        private VideoRenderer videoRenderer;
+        private VideoTrack videoTrack;
+        private boolean videoRendered = true;
+
+        VideoBinding(VideoRenderer.Callbacks target) {
+            this.target = target;
+        }
+
+        void attach(VideoTrack videoTrack) {
+            this.videoTrack = videoTrack;
+            frameGate = new FrameGate(target);
+            frameGate.setOpen(videoRendered);
+            videoTrack.setEnabled(videoRendered);
+            videoRenderer = createVideoRenderer(frameGate);
+            videoTrack.addRenderer(videoRenderer);
+        }
+
+        void detach() {
+            if (frameGate != null) {
+                frameGate.setOpen(false);
+                frameGate = null;
+            }
+            if (videoRenderer != null) {
+                videoTrack.removeRenderer(videoRenderer);
+                videoRenderer.dispose();
+                videoRenderer = null;
+            }
+            videoTrack = null;
+        }
+
+        boolean isVideoRendered() {
+            return videoRendered;
+        }
+
+        /**
+         * @return false if nothing changed
+         */
+        boolean setVideoRendered(boolean videoRendered) {
+            if (this.videoRendered == videoRendered) {
+                return false;
+            }
+
+            this.videoRendered = videoRendered;
+            if (frameGate != null) {
+                frameGate.setOpen(videoRendered);
+            }
+            if (videoTrack != null) {
+                // tracks of closed connections are not disposed, so this is safe until the tile is recycled
+                videoTrack.setEnabled(videoRendered);
+            }
+            return true;
+        }
+
+        VideoRenderer createVideoRenderer(VideoRenderer.Callbacks callbacks) {
+            return new VideoRenderer(callbacks);
+        }
+    }
+
+    /**
+     * Forwards frames to the renderer while open and drops them otherwise, so neither a paused nor a
+     * stale track can draw into a tile that already shows somebody else.
+     */
+    private static class FrameGate implements VideoRenderer.Callbacks {
+        private final VideoRenderer.Callbacks target;
+        private volatile boolean open = true;
+
+        FrameGate(VideoRenderer.Callbacks target) {
+            this.target = target;
+        }
+
+        void setOpen(boolean open) {
+            this.open = open;
+        }
+
+        @Override
+        public void renderFrame(VideoRenderer.I420Frame frame) {
+            if (open) {
+                target.renderFrame(frame);
+            } else {
+                VideoRenderer.renderFrameDone(frame);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Shared threads for everything on the call and signaling path. Using them instead of
+ * {@code Schedulers.newThread()} means a poll or a ping reuses an idle thread instead of creating
+ * and tearing down a new one every time.
+ * <p>
+ * Short tasks (timers, stats, peer connection setup) run on a small fixed pool. Blocking network
+ * calls get their own pool, large enough that a long poll held by the server for half a minute does
+ * not starve a ping, a join or an outgoing signaling message. Calls beyond that wait for a thread.
+ */
+public class SignalingExecutor {
+    public static final String SCHEDULER_NAME = "signalingScheduler";
+    public static final String NETWORK_SCHEDULER_NAME = "signalingNetworkScheduler";
+
+    private static final int POOL_SIZE = 4;
+    // a long poll, a ping, an outgoing batch and the three requests of a join, with room to spare
+    static final int NETWORK_POOL_SIZE = 8;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final AtomicLong threadsCreated = new AtomicLong();
+    private final ThreadPoolExecutor threadPoolExecutor;
+    private final ThreadPoolExecutor networkThreadPoolExecutor;
+    private final Scheduler scheduler;
+    private final Scheduler networkScheduler;
+
+    public SignalingExecutor() {
+        threadPoolExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new CountingThreadFactory("signaling-"));
+        // let the pool shrink to nothing while there is no call going on
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        scheduler = Schedulers.from(threadPoolExecutor);
+
+        networkThreadPoolExecutor = new ThreadPoolExecutor(NETWORK_POOL_SIZE, NETWORK_POOL_SIZE, KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new CountingThreadFactory("signaling-network-"));
+        networkThreadPoolExecutor.allowCoreThreadTimeOut(true);
+        networkScheduler = Schedulers.from(networkThreadPoolExecutor);
+    }
+
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Scheduler for calls that block on the network, e.g. the signaling long poll.
+     */
+    public Scheduler getNetworkScheduler() {
+        return networkScheduler;
+    }
+
+    public long getThreadsCreated() {
+        return threadsCreated.get();
+    }
+
+    public long getTasksExecuted() {
+        return threadPoolExecutor.getCompletedTaskCount() + networkThreadPoolExecutor.getCompletedTaskCount();
+    }
+
+    private class CountingThreadFactory implements ThreadFactory {
+        private final String namePrefix;
+
+        CountingThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, namePrefix + threadsCreated.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
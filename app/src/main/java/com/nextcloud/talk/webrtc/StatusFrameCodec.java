@@ -0,0 +1,160 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.support.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Encodes audio/video status changes for the "status" data channel.
+ * <p>
+ * Peers that announced {@link #CAPABILITY_TYPE} get binary status frames: a magic byte followed by a
+ * flags byte carrying any number of status changes at once. Everyone else, web clients in particular,
+ * gets the usual JSON messages, one per change. Those are pre-encoded, so sending them only copies bytes
+ * into a reusable buffer.
+ */
+public class StatusFrameCodec {
+    public static final String CAPABILITY_TYPE = "statusFrames";
+
+    static final byte FRAME_MAGIC = (byte) 0xA5;
+    static final int FRAME_SIZE = 2;
+
+    static final int AUDIO_PRESENT = 1;
+    static final int AUDIO_ON = 1 << 1;
+    static final int VIDEO_PRESENT = 1 << 2;
+    static final int VIDEO_ON = 1 << 3;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte[] AUDIO_ON_JSON = json("audioOn");
+    private static final byte[] AUDIO_OFF_JSON = json("audioOff");
+    private static final byte[] VIDEO_ON_JSON = json("videoOn");
+    private static final byte[] VIDEO_OFF_JSON = json("videoOff");
+    static final byte[] CAPABILITY_JSON = ("{\"type\":\"" + CAPABILITY_TYPE + "\",\"payload\":\"1\"}").getBytes(UTF_8);
+
+    // big enough for every pre-encoded message
+    static final int MAX_MESSAGE_SIZE = 64;
+
+    private static byte[] json(String type) {
+        return ("{\"type\":\"" + type + "\"}").getBytes(UTF_8);
+    }
+
+    /**
+     * Writes a binary frame with the given changes into the buffer and flips it for reading.
+     *
+     * @param audioOn the new audio state, or null if it did not change
+     * @param videoOn the new video state, or null if it did not change
+     */
+    public static void encodeFrame(ByteBuffer target, @Nullable Boolean audioOn, @Nullable Boolean videoOn) {
+        int flags = 0;
+        if (audioOn != null) {
+            flags |= AUDIO_PRESENT | (audioOn ? AUDIO_ON : 0);
+        }
+        if (videoOn != null) {
+            flags |= VIDEO_PRESENT | (videoOn ? VIDEO_ON : 0);
+        }
+
+        target.clear();
+        target.put(FRAME_MAGIC);
+        target.put((byte) flags);
+        target.flip();
+    }
+
+    /**
+     * @return the flags of a binary frame, or -1 if the buffer does not hold one
+     */
+    public static int decodeFrame(ByteBuffer source) {
+        int position = source.position();
+        if (source.remaining() != FRAME_SIZE || source.get(position) != FRAME_MAGIC) {
+            return -1;
+        }
+        return source.get(position + 1) & 0xFF;
+    }
+
+    @Nullable
+    public static Boolean getAudioOn(int flags) {
+        return (flags & AUDIO_PRESENT) == 0 ? null : (flags & AUDIO_ON) != 0;
+    }
+
+    @Nullable
+    public static Boolean getVideoOn(int flags) {
+        return (flags & VIDEO_PRESENT) == 0 ? null : (flags & VIDEO_ON) != 0;
+    }
+
+    /**
+     * Writes the JSON message for a single status change into the buffer and flips it for reading.
+     */
+    public static void encodeAudioJson(ByteBuffer target, boolean audioOn) {
+        put(target, audioOn ? AUDIO_ON_JSON : AUDIO_OFF_JSON);
+    }
+
+    public static void encodeVideoJson(ByteBuffer target, boolean videoOn) {
+        put(target, videoOn ? VIDEO_ON_JSON : VIDEO_OFF_JSON);
+    }
+
+    public static void encodeCapabilityJson(ByteBuffer target) {
+        put(target, CAPABILITY_JSON);
+    }
+
+    private static void put(ByteBuffer target, byte[] message) {
+        target.clear();
+        target.put(message);
+        target.flip();
+    }
+
+    /**
+     * Recognizes the pre-encoded JSON messages without decoding the buffer into a string.
+     *
+     * @return the message type, or null if the buffer holds anything else
+     */
+    @Nullable
+    public static String matchJson(ByteBuffer source) {
+        if (matches(source, AUDIO_ON_JSON)) {
+            return "audioOn";
+        } else if (matches(source, AUDIO_OFF_JSON)) {
+            return "audioOff";
+        } else if (matches(source, VIDEO_ON_JSON)) {
+            return "videoOn";
+        } else if (matches(source, VIDEO_OFF_JSON)) {
+            return "videoOff";
+        } else if (matches(source, CAPABILITY_JSON)) {
+            return CAPABILITY_TYPE;
+        }
+        return null;
+    }
+
+    private static boolean matches(ByteBuffer source, byte[] message) {
+        if (source.remaining() != message.length) {
+            return false;
+        }
+
+        int position = source.position();
+        for (int i = 0; i < message.length; i++) {
+            if (source.get(position + i) != message[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
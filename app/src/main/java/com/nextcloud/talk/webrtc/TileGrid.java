@@ -0,0 +1,104 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+/**
+ * Arrangement of the remote tiles of a call: the number of columns and rows that shows the videos as
+ * large as possible in the available space. Plain Java, so it can be exercised on the JVM.
+ */
+public class TileGrid {
+    // what most cameras deliver, used to judge how much of a tile the video can fill
+    static final double VIDEO_ASPECT_RATIO = 4.0 / 3.0;
+
+    private final int columns;
+    private final int rows;
+    private final int tileWidth;
+    private final int tileHeight;
+
+    TileGrid(int columns, int rows, int tileWidth, int tileHeight) {
+        this.columns = columns;
+        this.rows = rows;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+    }
+
+    /**
+     * @param tileCount the number of tiles to show
+     * @param width     the available width in pixels
+     * @param height    the available height in pixels
+     */
+    public static TileGrid compute(int tileCount, int width, int height) {
+        if (tileCount <= 0 || width <= 0 || height <= 0) {
+            return new TileGrid(0, 0, 0, 0);
+        }
+
+        TileGrid best = null;
+        double bestVideoArea = -1;
+        for (int columns = 1; columns <= tileCount; columns++) {
+            int rows = (tileCount + columns - 1) / columns;
+            // more columns than needed would only leave holes
+            if (columns > 1 && (rows - 1) * columns >= tileCount) {
+                continue;
+            }
+
+            int tileWidth = width / columns;
+            int tileHeight = height / rows;
+            double videoArea = videoArea(tileWidth, tileHeight);
+            if (videoArea > bestVideoArea) {
+                bestVideoArea = videoArea;
+                best = new TileGrid(columns, rows, tileWidth, tileHeight);
+            }
+        }
+
+        return best;
+    }
+
+    private static double videoArea(int tileWidth, int tileHeight) {
+        // the video is fit into the tile, in landscape or portrait depending on the sender
+        double landscape = Math.min(tileWidth, tileHeight * VIDEO_ASPECT_RATIO)
+                * Math.min(tileHeight, tileWidth / VIDEO_ASPECT_RATIO);
+        double portrait = Math.min(tileWidth, tileHeight / VIDEO_ASPECT_RATIO)
+                * Math.min(tileHeight, tileWidth * VIDEO_ASPECT_RATIO);
+        return (landscape + portrait) / 2;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    @Override
+    public String toString() {
+        return columns + "x" + rows + " tiles of " + tileWidth + "x" + tileHeight;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.graphics.Rect;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+/**
+ * Tells whether a remote tile can actually be seen: it has to be attached, shown and at least partly
+ * on screen, and not completely covered by the call controls. Only meant to be used from the UI thread.
+ */
+public class TileVisibilityTracker {
+    private final Rect tileRect = new Rect();
+    private final Rect coverRect = new Rect();
+
+    @Nullable
+    private View cover;
+
+    /**
+     * @param cover a view drawn on top of the tiles, e.g. the call controls
+     */
+    public void setCover(@Nullable View cover) {
+        this.cover = cover;
+    }
+
+    public boolean isVisible(View tile) {
+        if (!tile.isShown() || !tile.getGlobalVisibleRect(tileRect)) {
+            return false;
+        }
+
+        return cover == null || !cover.isShown() || cover.getAlpha() == 0
+                || !cover.getGlobalVisibleRect(coverRect) || !coverRect.contains(tileRect);
+    }
+}
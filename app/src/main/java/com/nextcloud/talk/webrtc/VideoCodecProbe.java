@@ -0,0 +1,86 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.util.Log;
+
+import com.nextcloud.talk.webrtc.sdp.VideoCodecPolicy;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds out which of the video codecs we negotiate have hardware encoders and decoders on this device.
+ */
+public class VideoCodecProbe {
+    private static final String TAG = "VideoCodecProbe";
+
+    // MediaCodec implementations that run on the CPU
+    private static final String[] SOFTWARE_CODEC_PREFIXES = {"OMX.google.", "OMX.SEC.", "c2.android.", "c2.google."};
+
+    private static final Map<String, String> MIME_TYPES = new HashMap<>();
+
+    static {
+        MIME_TYPES.put("video/x-vnd.on2.vp8", VideoCodecPolicy.VP8);
+        MIME_TYPES.put("video/avc", VideoCodecPolicy.H264);
+    }
+
+    public static VideoCodecPolicy probe() {
+        Set<String> hardwareEncoders = new HashSet<>();
+        Set<String> hardwareDecoders = new HashSet<>();
+
+        try {
+            for (MediaCodecInfo mediaCodecInfo : new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos()) {
+                if (isSoftwareCodec(mediaCodecInfo.getName())) {
+                    continue;
+                }
+
+                for (String supportedType : mediaCodecInfo.getSupportedTypes()) {
+                    String codec = MIME_TYPES.get(supportedType.toLowerCase(Locale.US));
+                    if (codec != null) {
+                        (mediaCodecInfo.isEncoder() ? hardwareEncoders : hardwareDecoders).add(codec);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // some vendors' codec lists throw while being enumerated
+            Log.d(TAG, "Failed to probe the media codecs, assuming software only");
+            return VideoCodecPolicy.softwareOnly();
+        }
+
+        return new VideoCodecPolicy(hardwareEncoders, hardwareDecoders);
+    }
+
+    private static boolean isSoftwareCodec(String name) {
+        for (String prefix : SOFTWARE_CODEC_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
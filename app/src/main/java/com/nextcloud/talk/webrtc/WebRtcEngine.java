@@ -0,0 +1,188 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.nextcloud.talk.webrtc.sdp.VideoCodecPolicy;
+
+import org.webrtc.AudioSource;
+import org.webrtc.AudioTrack;
+import org.webrtc.EglBase;
+import org.webrtc.MediaConstraints;
+import org.webrtc.PeerConnectionFactory;
+import org.webrtc.VideoCapturer;
+import org.webrtc.VideoSource;
+import org.webrtc.VideoTrack;
+
+import io.reactivex.Observable;
+import io.reactivex.Observer;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Owns the process wide WebRTC state: the native globals, the {@link PeerConnectionFactory}, the shared
+ * {@link EglBase} and the microphone source. Setting those up takes a few hundred milliseconds, so it
+ * is done once, off the main thread, and ideally before the user even opens a call via {@link #prewarm()}.
+ * Calls only take fresh local tracks from the engine.
+ */
+public class WebRtcEngine {
+    private static final String TAG = "WebRtcEngine";
+
+    private final Context context;
+    private final Scheduler scheduler;
+
+    private final Object lock = new Object();
+    private PeerConnectionFactory peerConnectionFactory;
+    private EglBase eglBase;
+    private AudioSource audioSource;
+    private VideoCodecPolicy videoCodecPolicy;
+    private long initializationTimeMs = -1;
+
+    public WebRtcEngine(Context context, Scheduler scheduler) {
+        this.context = context.getApplicationContext();
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Initializes the engine in the background if that did not happen yet.
+     */
+    public void prewarm() {
+        if (isInitialized()) {
+            return;
+        }
+
+        getReadyEngine().subscribe(new Observer<WebRtcEngine>() {
+            @Override
+            public void onSubscribe(Disposable d) {
+
+            }
+
+            @Override
+            public void onNext(WebRtcEngine webRtcEngine) {
+
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                Log.d(TAG, "Failed to prewarm the engine");
+            }
+
+            @Override
+            public void onComplete() {
+
+            }
+        });
+    }
+
+    /**
+     * Emits the engine once it is initialized. Initialization, if still needed, runs on the signaling
+     * scheduler, never on the caller's thread.
+     */
+    public Observable<WebRtcEngine> getReadyEngine() {
+        return Observable.fromCallable(() -> {
+            ensureInitialized();
+            return this;
+        }).subscribeOn(scheduler);
+    }
+
+    public boolean isInitialized() {
+        synchronized (lock) {
+            return peerConnectionFactory != null;
+        }
+    }
+
+    /**
+     * @return how long native initialization took, or -1 if the engine is not initialized yet
+     */
+    public long getInitializationTimeMs() {
+        synchronized (lock) {
+            return initializationTimeMs;
+        }
+    }
+
+    public PeerConnectionFactory getPeerConnectionFactory() {
+        ensureInitialized();
+        return peerConnectionFactory;
+    }
+
+    public EglBase getEglBase() {
+        ensureInitialized();
+        return eglBase;
+    }
+
+    /**
+     * @return the video codec order that suits this device's hardware codecs best
+     */
+    public VideoCodecPolicy getVideoCodecPolicy() {
+        ensureInitialized();
+        return videoCodecPolicy;
+    }
+
+    public AudioTrack createLocalAudioTrack() {
+        ensureInitialized();
+        return peerConnectionFactory.createAudioTrack("NCa0", audioSource);
+    }
+
+    /**
+     * The video source is bound to the capturer, so unlike the audio source it belongs to the call and
+     * has to be disposed by it together with the capturer.
+     */
+    public VideoSource createVideoSource(VideoCapturer videoCapturer) {
+        ensureInitialized();
+        return peerConnectionFactory.createVideoSource(videoCapturer);
+    }
+
+    public VideoTrack createLocalVideoTrack(VideoSource videoSource) {
+        ensureInitialized();
+        return peerConnectionFactory.createVideoTrack("NCv0", videoSource);
+    }
+
+    private void ensureInitialized() {
+        synchronized (lock) {
+            if (peerConnectionFactory != null) {
+                return;
+            }
+
+            long startedAt = SystemClock.elapsedRealtime();
+
+            PeerConnectionFactory.InitializationOptions initializationOptions = PeerConnectionFactory
+                    .InitializationOptions.builder(context)
+                    .setEnableVideoHwAcceleration(true)
+                    .createInitializationOptions();
+            PeerConnectionFactory.initialize(initializationOptions);
+
+            eglBase = EglBase.create();
+            PeerConnectionFactory.Options options = new PeerConnectionFactory.Options();
+            PeerConnectionFactory factory = new PeerConnectionFactory(options);
+            audioSource = factory.createAudioSource(new MediaConstraints());
+            videoCodecPolicy = VideoCodecProbe.probe();
+            peerConnectionFactory = factory;
+
+            initializationTimeMs = SystemClock.elapsedRealtime() - startedAt;
+            Log.d(TAG, "Initialized in " + initializationTimeMs + " ms on " + Thread.currentThread().getName()
+                    + ", video codecs: " + videoCodecPolicy);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.sdp;
+
+/**
+ * How much media a single peer connection may carry. Applied to both descriptions of a connection:
+ * on the local one the caps tell the other side how much to send us, on the remote one they limit what
+ * our own encoders send.
+ */
+public enum MediaBandwidthProfile {
+    WIFI(1500, 64, 40000, false),
+    CELLULAR(600, 40, 24000, true),
+    CONSTRAINED(250, 24, 16000, true);
+
+    // below this uplink estimate the network is treated as constrained, whatever its type
+    static final long CONSTRAINED_UPLINK_KBPS = 500;
+
+    private static final String OPUS = "opus";
+
+    private final int videoKbps;
+    private final int audioKbps;
+    private final int opusMaxAverageBitrate;
+    private final boolean opusDtx;
+
+    MediaBandwidthProfile(int videoKbps, int audioKbps, int opusMaxAverageBitrate, boolean opusDtx) {
+        this.videoKbps = videoKbps;
+        this.audioKbps = audioKbps;
+        this.opusMaxAverageBitrate = opusMaxAverageBitrate;
+        this.opusDtx = opusDtx;
+    }
+
+    /**
+     * @param metered    whether the active network is metered (usually cellular)
+     * @param uplinkKbps the uplink estimate, or a negative value if there is none
+     */
+    public static MediaBandwidthProfile select(boolean metered, long uplinkKbps) {
+        if (uplinkKbps > 0 && uplinkKbps < CONSTRAINED_UPLINK_KBPS) {
+            return CONSTRAINED;
+        }
+
+        return metered ? CELLULAR : WIFI;
+    }
+
+    public int getVideoKbps() {
+        return videoKbps;
+    }
+
+    public int getAudioKbps() {
+        return audioKbps;
+    }
+
+    /**
+     * Writes the bandwidth caps into every audio and video section and tunes Opus: in-band FEC is
+     * always on since it is cheap insurance against loss, DTX only where saving bits matters more than
+     * comfort noise.
+     */
+    public void apply(SdpSession sdpSession) {
+        for (SdpSession.MediaSection mediaSection : sdpSession.getMediaSections()) {
+            if ("video".equals(mediaSection.getMedia())) {
+                mediaSection.setBandwidthLimit(videoKbps);
+            } else if ("audio".equals(mediaSection.getMedia())) {
+                mediaSection.setBandwidthLimit(audioKbps);
+                mediaSection.setFormatParameter(OPUS, "useinbandfec", "1");
+                mediaSection.setFormatParameter(OPUS, "usedtx", opusDtx ? "1" : "0");
+                mediaSection.setFormatParameter(OPUS, "maxaveragebitrate", Integer.toString(opusMaxAverageBitrate));
+            }
+        }
+    }
+}
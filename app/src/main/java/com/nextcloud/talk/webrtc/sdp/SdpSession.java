@@ -0,0 +1,340 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.sdp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal SDP model used to rewrite local and remote descriptions. The description is split into
+ * session lines and media sections in a single scan, any number of rewrites can then be applied to
+ * the sections, and the result is written back out once with {@link #serialize()}.
+ * <p>
+ * Only the lines we rewrite (m=, a=rtpmap, a=fmtp, b=AS, b=TIAS) are looked at, everything else is
+ * kept verbatim and in order.
+ */
+public class SdpSession {
+    private static final String LINE_SEPARATOR = "\r\n";
+
+    private final List<String> sessionLines = new ArrayList<>();
+    private final List<MediaSection> mediaSections = new ArrayList<>();
+    private final int originalLength;
+
+    private SdpSession(int originalLength) {
+        this.originalLength = originalLength;
+    }
+
+    public static SdpSession parse(String sdpDescription) {
+        SdpSession sdpSession = new SdpSession(sdpDescription.length());
+        MediaSection currentMediaSection = null;
+
+        int length = sdpDescription.length();
+        int start = 0;
+        while (start < length) {
+            int end = sdpDescription.indexOf('\n', start);
+            if (end == -1) {
+                end = length;
+            }
+
+            int lineEnd = end;
+            if (lineEnd > start && sdpDescription.charAt(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+
+            if (lineEnd > start) {
+                String line = sdpDescription.substring(start, lineEnd);
+                if (line.startsWith("m=")) {
+                    currentMediaSection = new MediaSection(line);
+                    sdpSession.mediaSections.add(currentMediaSection);
+                } else if (currentMediaSection == null) {
+                    sdpSession.sessionLines.add(line);
+                } else {
+                    currentMediaSection.addLine(line);
+                }
+            }
+
+            start = end + 1;
+        }
+
+        return sdpSession;
+    }
+
+    public List<MediaSection> getMediaSections() {
+        return mediaSections;
+    }
+
+    /**
+     * Returns the first media section of the given type ("audio", "video", ...), or null.
+     */
+    public MediaSection getMediaSection(String media) {
+        for (int i = 0; i < mediaSections.size(); i++) {
+            if (mediaSections.get(i).getMedia().equals(media)) {
+                return mediaSections.get(i);
+            }
+        }
+        return null;
+    }
+
+    public String serialize() {
+        // rewrites only ever add a few short lines
+        StringBuilder stringBuilder = new StringBuilder(originalLength + 128);
+
+        for (int i = 0; i < sessionLines.size(); i++) {
+            stringBuilder.append(sessionLines.get(i)).append(LINE_SEPARATOR);
+        }
+
+        for (int i = 0; i < mediaSections.size(); i++) {
+            mediaSections.get(i).serialize(stringBuilder);
+        }
+
+        return stringBuilder.toString();
+    }
+
+    public static class MediaSection {
+        private final String media;
+        private final String mLineHeader;
+        private final List<String> payloadTypes = new ArrayList<>();
+        private final List<String> lines = new ArrayList<>();
+        // payload type -> encoding name, e.g. "96" -> "VP8"
+        private final Map<String, String> rtpMaps = new HashMap<>();
+
+        private int bandwidthAsKbps = -1;
+        private long bandwidthTiasBps = -1;
+
+        MediaSection(String mLine) {
+            // m=<media> <port> <proto> <fmt> ...
+            int mediaEnd = mLine.indexOf(' ');
+            int portEnd = mediaEnd == -1 ? -1 : mLine.indexOf(' ', mediaEnd + 1);
+            int protoEnd = portEnd == -1 ? -1 : mLine.indexOf(' ', portEnd + 1);
+
+            if (protoEnd == -1) {
+                media = mediaEnd == -1 ? mLine.substring(2) : mLine.substring(2, mediaEnd);
+                mLineHeader = mLine;
+                return;
+            }
+
+            media = mLine.substring(2, mediaEnd);
+            mLineHeader = mLine.substring(0, protoEnd);
+
+            int start = protoEnd + 1;
+            while (start < mLine.length()) {
+                int end = mLine.indexOf(' ', start);
+                if (end == -1) {
+                    end = mLine.length();
+                }
+                if (end > start) {
+                    payloadTypes.add(mLine.substring(start, end));
+                }
+                start = end + 1;
+            }
+        }
+
+        void addLine(String line) {
+            if (line.startsWith("b=AS:")) {
+                bandwidthAsKbps = parseInt(line.substring(5));
+                return;
+            } else if (line.startsWith("b=TIAS:")) {
+                bandwidthTiasBps = parseLong(line.substring(7));
+                return;
+            } else if (line.startsWith("a=rtpmap:")) {
+                // a=rtpmap:<payload type> <encoding name>/<clock rate> [/<encoding parameters>]
+                int payloadTypeEnd = line.indexOf(' ', 9);
+                if (payloadTypeEnd != -1) {
+                    int encodingNameEnd = line.indexOf('/', payloadTypeEnd);
+                    rtpMaps.put(line.substring(9, payloadTypeEnd), line.substring(payloadTypeEnd + 1,
+                            encodingNameEnd == -1 ? line.length() : encodingNameEnd));
+                }
+            }
+
+            lines.add(line);
+        }
+
+        public String getMedia() {
+            return media;
+        }
+
+        public List<String> getPayloadTypes() {
+            return payloadTypes;
+        }
+
+        public List<String> getPayloadTypesForCodec(String codec) {
+            List<String> codecPayloadTypes = new ArrayList<>();
+            for (int i = 0; i < payloadTypes.size(); i++) {
+                if (codec.equalsIgnoreCase(rtpMaps.get(payloadTypes.get(i)))) {
+                    codecPayloadTypes.add(payloadTypes.get(i));
+                }
+            }
+            return codecPayloadTypes;
+        }
+
+        /**
+         * Moves all payload types of the given codec to the front of the m= line.
+         *
+         * @return false if the codec is not offered in this section
+         */
+        public boolean preferCodec(String codec) {
+            List<String> preferredPayloadTypes = getPayloadTypesForCodec(codec);
+            if (preferredPayloadTypes.isEmpty()) {
+                return false;
+            }
+
+            payloadTypes.removeAll(preferredPayloadTypes);
+            payloadTypes.addAll(0, preferredPayloadTypes);
+            return true;
+        }
+
+        /**
+         * Caps the bandwidth of this section, written out as both b=AS (kbps) and b=TIAS (bps).
+         */
+        public void setBandwidthLimit(int kbps) {
+            bandwidthAsKbps = kbps;
+            bandwidthTiasBps = kbps * 1000L;
+        }
+
+        public int getBandwidthLimit() {
+            return bandwidthAsKbps;
+        }
+
+        /**
+         * Sets a format parameter (a=fmtp) for every payload type of the given codec, creating the
+         * fmtp line if there is none yet.
+         */
+        public void setFormatParameter(String codec, String key, String value) {
+            List<String> codecPayloadTypes = getPayloadTypesForCodec(codec);
+
+            for (int i = 0; i < codecPayloadTypes.size(); i++) {
+                String payloadType = codecPayloadTypes.get(i);
+                String fmtpPrefix = "a=fmtp:" + payloadType + " ";
+                String rtpMapPrefix = "a=rtpmap:" + payloadType + " ";
+
+                int fmtpIndex = -1;
+                int rtpMapIndex = -1;
+                for (int j = 0; j < lines.size(); j++) {
+                    if (lines.get(j).startsWith(fmtpPrefix)) {
+                        fmtpIndex = j;
+                        break;
+                    } else if (lines.get(j).startsWith(rtpMapPrefix)) {
+                        rtpMapIndex = j;
+                    }
+                }
+
+                if (fmtpIndex != -1) {
+                    lines.set(fmtpIndex, fmtpPrefix + replaceParameter(
+                            lines.get(fmtpIndex).substring(fmtpPrefix.length()), key, value));
+                } else if (rtpMapIndex != -1) {
+                    lines.add(rtpMapIndex + 1, fmtpPrefix + key + "=" + value);
+                }
+            }
+        }
+
+        private static String replaceParameter(String parameters, String key, String value) {
+            StringBuilder stringBuilder = new StringBuilder(parameters.length() + key.length() + 8);
+            boolean replaced = false;
+
+            int start = 0;
+            while (start < parameters.length()) {
+                int end = parameters.indexOf(';', start);
+                if (end == -1) {
+                    end = parameters.length();
+                }
+
+                String parameter = parameters.substring(start, end).trim();
+                if (parameter.length() > 0) {
+                    if (stringBuilder.length() > 0) {
+                        stringBuilder.append(';');
+                    }
+
+                    int separator = parameter.indexOf('=');
+                    String parameterKey = separator == -1 ? parameter : parameter.substring(0, separator);
+                    if (parameterKey.equals(key)) {
+                        stringBuilder.append(key).append('=').append(value);
+                        replaced = true;
+                    } else {
+                        stringBuilder.append(parameter);
+                    }
+                }
+
+                start = end + 1;
+            }
+
+            if (!replaced) {
+                if (stringBuilder.length() > 0) {
+                    stringBuilder.append(';');
+                }
+                stringBuilder.append(key).append('=').append(value);
+            }
+
+            return stringBuilder.toString();
+        }
+
+        private static int parseInt(String value) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        private static long parseLong(String value) {
+            try {
+                // TIAS is in bps, browsers send up to 2^32 - 1 for "unlimited"
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        void serialize(StringBuilder stringBuilder) {
+            stringBuilder.append(mLineHeader);
+            for (int i = 0; i < payloadTypes.size(); i++) {
+                stringBuilder.append(' ').append(payloadTypes.get(i));
+            }
+            stringBuilder.append(LINE_SEPARATOR);
+
+            // b= lines have to follow the optional i= and c= lines of the section
+            boolean bandwidthWritten = false;
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i);
+                if (!bandwidthWritten && !line.startsWith("i=") && !line.startsWith("c=")) {
+                    serializeBandwidth(stringBuilder);
+                    bandwidthWritten = true;
+                }
+                stringBuilder.append(line).append(LINE_SEPARATOR);
+            }
+
+            if (!bandwidthWritten) {
+                serializeBandwidth(stringBuilder);
+            }
+        }
+
+        private void serializeBandwidth(StringBuilder stringBuilder) {
+            if (bandwidthAsKbps >= 0) {
+                stringBuilder.append("b=AS:").append(bandwidthAsKbps).append(LINE_SEPARATOR);
+            }
+            if (bandwidthTiasBps >= 0) {
+                stringBuilder.append("b=TIAS:").append(bandwidthTiasBps).append(LINE_SEPARATOR);
+            }
+        }
+    }
+}
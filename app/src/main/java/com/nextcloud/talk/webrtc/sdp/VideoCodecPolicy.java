@@ -0,0 +1,118 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.sdp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Orders the video codecs we negotiate by what the device can do in hardware: a hardware encoder
+ * counts most, since in a mesh every peer gets its own encode, then a hardware decoder.
+ * Ties keep VP8 first, it is what every Talk client supports.
+ */
+public class VideoCodecPolicy {
+    public static final String VP8 = "VP8";
+    public static final String H264 = "H264";
+
+    // the codecs this WebRTC build can drive through MediaCodec, in tie-breaking order
+    static final List<String> CANDIDATES = Collections.unmodifiableList(Arrays.asList(VP8, H264));
+
+    private final Set<String> hardwareEncoders;
+    private final Set<String> hardwareDecoders;
+    private final List<String> codecOrder;
+
+    public VideoCodecPolicy(Collection<String> hardwareEncoders, Collection<String> hardwareDecoders) {
+        this.hardwareEncoders = new HashSet<>(hardwareEncoders);
+        this.hardwareDecoders = new HashSet<>(hardwareDecoders);
+
+        List<String> order = new ArrayList<>(CANDIDATES);
+        // stable, so equally scored codecs stay in candidate order
+        Collections.sort(order, (first, second) -> score(second) - score(first));
+        codecOrder = Collections.unmodifiableList(order);
+    }
+
+    /**
+     * @return the policy for a device without any hardware codecs
+     */
+    public static VideoCodecPolicy softwareOnly() {
+        return new VideoCodecPolicy(Collections.emptySet(), Collections.emptySet());
+    }
+
+    private int score(String codec) {
+        return (hardwareEncoders.contains(codec) ? 2 : 0) + (hardwareDecoders.contains(codec) ? 1 : 0);
+    }
+
+    public List<String> getCodecOrder() {
+        return codecOrder;
+    }
+
+    public String getPreferredCodec() {
+        return codecOrder.get(0);
+    }
+
+    public boolean hasHardwareEncoder(String codec) {
+        return hardwareEncoders.contains(codec);
+    }
+
+    public boolean hasHardwareDecoder(String codec) {
+        return hardwareDecoders.contains(codec);
+    }
+
+    /**
+     * Reorders the payload types of the video section; codecs the description does not offer are
+     * skipped, so the result never asks for something the other side cannot do.
+     *
+     * @return false if there is no video section
+     */
+    public boolean apply(SdpSession sdpSession) {
+        SdpSession.MediaSection videoSection = sdpSession.getMediaSection("video");
+        if (videoSection == null) {
+            return false;
+        }
+
+        // preferCodec moves to the front, so go from least to most preferred
+        for (int i = codecOrder.size() - 1; i >= 0; i--) {
+            videoSection.preferCodec(codecOrder.get(i));
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < codecOrder.size(); i++) {
+            String codec = codecOrder.get(i);
+            if (i > 0) {
+                stringBuilder.append(" > ");
+            }
+            stringBuilder.append(codec).append(" (")
+                    .append(hasHardwareEncoder(codec) ? "hw" : "sw").append(" enc, ")
+                    .append(hasHardwareDecoder(codec) ? "hw" : "sw").append(" dec)");
+        }
+        return stringBuilder.toString();
+    }
+}
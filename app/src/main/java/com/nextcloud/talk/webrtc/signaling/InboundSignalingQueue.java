@@ -0,0 +1,179 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.signaling;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.nextcloud.talk.api.models.json.signaling.NCSignalingMessage;
+import com.nextcloud.talk.api.models.json.signaling.Signaling;
+import com.nextcloud.talk.api.models.json.signaling.SignalingData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Processes inbound signaling messages on a single background thread, one pulled batch at a time.
+ * Within a batch, messages are handled by class: roster updates first (so that the peers exist),
+ * then offers and answers (which unblock candidate draining), then candidates and finally
+ * endOfCandidates. The relative order of messages of the same class is kept.
+ */
+public class InboundSignalingQueue {
+    private static final String TAG = "InboundSignalingQueue";
+
+    private final SignalingHandler signalingHandler;
+    private final ExecutorService executorService;
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong messagesProcessed = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public InboundSignalingQueue(SignalingHandler signalingHandler) {
+        this.signalingHandler = signalingHandler;
+        this.executorService = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inbound-signaling");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static MessageClass classify(Signaling signaling) {
+        SignalingData signalingData = signaling.getSignalingData();
+
+        if ("usersInRoom".equals(signaling.getType())) {
+            return MessageClass.ROSTER;
+        } else if (!"message".equals(signaling.getType()) || signalingData == null
+                || signalingData.getMessage() == null) {
+            return MessageClass.OTHER;
+        }
+
+        NCSignalingMessage ncSignalingMessage = signalingData.getMessage();
+        String type = ncSignalingMessage.getType();
+        if (ncSignalingMessage.getPayload() != null && ncSignalingMessage.getPayload().getType() != null) {
+            type = ncSignalingMessage.getPayload().getType();
+        }
+
+        if ("offer".equals(type) || "answer".equals(type)) {
+            return MessageClass.SDP;
+        } else if ("candidate".equals(type)) {
+            return MessageClass.CANDIDATE;
+        } else if ("endOfCandidates".equals(type)) {
+            return MessageClass.END_OF_CANDIDATES;
+        } else {
+            return MessageClass.OTHER;
+        }
+    }
+
+    public void enqueueBatch(List<Signaling> signalings) {
+        if (signalings == null || signalings.isEmpty()) {
+            return;
+        }
+
+        MessageClass[] messageClasses = MessageClass.values();
+        List<List<Signaling>> buckets = new ArrayList<>(messageClasses.length);
+        for (int i = 0; i < messageClasses.length; i++) {
+            buckets.add(new ArrayList<>());
+        }
+
+        for (int i = 0; i < signalings.size(); i++) {
+            buckets.get(classify(signalings.get(i)).ordinal()).add(signalings.get(i));
+        }
+
+        long enqueuedAt = System.nanoTime();
+        int depth = queueDepth.addAndGet(signalings.size());
+        updateMax(maxQueueDepth, depth);
+
+        executorService.execute(() -> {
+            for (int i = 0; i < buckets.size(); i++) {
+                List<Signaling> bucket = buckets.get(i);
+                for (int j = 0; j < bucket.size(); j++) {
+                    queueDepth.decrementAndGet();
+                    long waitNanos = System.nanoTime() - enqueuedAt;
+                    totalWaitNanos.addAndGet(waitNanos);
+                    updateMax(maxWaitNanos, waitNanos);
+                    messagesProcessed.incrementAndGet();
+
+                    try {
+                        signalingHandler.handle(bucket.get(j));
+                    } catch (Exception e) {
+                        Log.d(TAG, "Failed to process a signaling message");
+                    }
+                }
+            }
+        });
+    }
+
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public long getMessagesProcessed() {
+        return messagesProcessed.get();
+    }
+
+    public long getAverageWaitMs() {
+        long processed = messagesProcessed.get();
+        return processed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / processed);
+    }
+
+    public long getMaxWaitMs() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        int current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    // Declaration order is processing order
+    public enum MessageClass {
+        ROSTER, SDP, CANDIDATE, END_OF_CANDIDATES, OTHER
+    }
+
+    public interface SignalingHandler {
+        void handle(@NonNull Signaling signaling) throws Exception;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.signaling;
+
+import android.util.Log;
+
+import com.nextcloud.talk.api.NcApi;
+import com.nextcloud.talk.api.models.json.signaling.SignalingOverall;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.BooleanSupplier;
+
+/**
+ * Long-poll transport: the server holds each pull open until it has messages for us (or its own
+ * hold time runs out), and we re-arm the next pull as soon as the previous one returns.
+ * <p>
+ * Servers that answer immediately instead of holding the request are detected by the round trip
+ * time, in which case the transport backs off to the regular polling interval instead of hammering.
+ */
+public class LongPollingSignalingTransport implements SignalingTransport {
+    private static final String TAG = "LongPollingSignalingTransport";
+
+    // Read timeout of the client behind the long poll, slightly above the server hold time of 30 seconds
+    // so that we don't cut off a legitimately held request
+    public static final long READ_TIMEOUT_SECONDS = 35;
+    // Anything that came back faster than this was most likely not held by the server
+    static final long MIN_HOLD_TIME_MS = 500;
+
+    private final NcApi ncApi;
+    private final Scheduler scheduler;
+
+    public LongPollingSignalingTransport(NcApi ncApi, Scheduler scheduler) {
+        this.ncApi = ncApi;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Observable<SignalingOverall> pullSignalingMessages(String credentials, String url,
+                                                              BooleanSupplier stopSupplier) {
+        AtomicLong requestStartedAt = new AtomicLong();
+
+        return Observable.defer(() -> ncApi.pullSignalingMessages(credentials, url))
+                .subscribeOn(scheduler)
+                .doOnSubscribe(disposable -> requestStartedAt.set(System.currentTimeMillis()))
+                .onErrorResumeNext(throwable -> {
+                    if (throwable instanceof SocketTimeoutException) {
+                        // Nothing arrived while the request was held, simply re-arm
+                        return Observable.empty();
+                    }
+                    return Observable.error(throwable);
+                })
+                // the handler completing is what ends the loop, a repeatUntil after it would never be asked
+                .repeatWhen(completed -> completed.takeWhile(o -> !stopSupplier.getAsBoolean()).flatMap(o -> {
+                    long heldFor = System.currentTimeMillis() - requestStartedAt.get();
+                    if (heldFor >= MIN_HOLD_TIME_MS) {
+                        return Observable.just(o);
+                    } else {
+                        Log.d(TAG, "Server did not hold the request, backing off");
+                        return Observable.timer(PollingSignalingTransport.POLLING_INTERVAL_MS - heldFor,
+                                TimeUnit.MILLISECONDS, scheduler);
+                    }
+                }))
+                .retry(3);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.signaling;
+
+import com.nextcloud.talk.api.NcApi;
+import com.nextcloud.talk.api.models.json.signaling.SignalingOverall;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.BooleanSupplier;
+
+/**
+ * Fallback transport: issues a pull request, waits a fixed interval and asks again.
+ */
+public class PollingSignalingTransport implements SignalingTransport {
+    static final long POLLING_INTERVAL_MS = 1500;
+
+    private final NcApi ncApi;
+    private final Scheduler scheduler;
+
+    public PollingSignalingTransport(NcApi ncApi, Scheduler scheduler) {
+        this.ncApi = ncApi;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Observable<SignalingOverall> pullSignalingMessages(String credentials, String url,
+                                                              BooleanSupplier stopSupplier) {
+        return ncApi.pullSignalingMessages(credentials, url)
+                .subscribeOn(scheduler)
+                .repeatWhen(completed -> completed.takeWhile(o -> !stopSupplier.getAsBoolean())
+                        .delay(POLLING_INTERVAL_MS, TimeUnit.MILLISECONDS, scheduler))
+                .retry(3);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.signaling;
+
+import com.nextcloud.talk.api.models.json.participants.Participant;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Turns "usersInRoom" messages into join/leave deltas against the peers we currently have.
+ * <p>
+ * The server repeats the full roster over and over, so the last one is remembered by an order
+ * independent fingerprint. When the roster did not change and the active peers still match it, the
+ * message is skipped without building any sets. Otherwise the delta is computed with hash lookups,
+ * linear in the number of participants.
+ */
+public class RosterState {
+    private Set<String> inCallSessions = Collections.emptySet();
+    private long fingerprint;
+    private boolean hasSnapshot;
+
+    private long rostersProcessed;
+    private long rostersSkipped;
+
+    public synchronized RosterDelta update(List<Participant> participants, String ownSession,
+                                           Collection<String> activeSessions) {
+        long newFingerprint = fingerprint(participants, ownSession);
+
+        if (hasSnapshot && newFingerprint == fingerprint && matchesSnapshot(activeSessions)) {
+            rostersSkipped++;
+            return RosterDelta.EMPTY;
+        }
+
+        Set<String> newInCallSessions = new HashSet<>();
+        for (int i = 0; i < participants.size(); i++) {
+            Participant participant = participants.get(i);
+            if (participant.isInCall() && participant.getSessionId() != null
+                    && !participant.getSessionId().equals(ownSession)) {
+                newInCallSessions.add(participant.getSessionId());
+            }
+        }
+
+        Set<String> activeSessionSet = activeSessions instanceof Set ? (Set<String>) activeSessions
+                : new HashSet<>(activeSessions);
+
+        List<String> joined = new ArrayList<>();
+        for (String sessionId : newInCallSessions) {
+            if (!activeSessionSet.contains(sessionId)) {
+                joined.add(sessionId);
+            }
+        }
+
+        List<String> left = new ArrayList<>();
+        for (String sessionId : activeSessionSet) {
+            if (!newInCallSessions.contains(sessionId)) {
+                left.add(sessionId);
+            }
+        }
+
+        inCallSessions = newInCallSessions;
+        fingerprint = newFingerprint;
+        hasSnapshot = true;
+        rostersProcessed++;
+
+        return new RosterDelta(joined, left);
+    }
+
+    public synchronized void reset() {
+        inCallSessions = Collections.emptySet();
+        fingerprint = 0;
+        hasSnapshot = false;
+    }
+
+    public synchronized long getRostersProcessed() {
+        return rostersProcessed;
+    }
+
+    public synchronized long getRostersSkipped() {
+        return rostersSkipped;
+    }
+
+    private boolean matchesSnapshot(Collection<String> activeSessions) {
+        if (activeSessions.size() != inCallSessions.size()) {
+            return false;
+        }
+
+        for (String sessionId : activeSessions) {
+            if (!inCallSessions.contains(sessionId)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Order independent, so a reshuffled but otherwise identical roster is still recognized
+    static long fingerprint(List<Participant> participants, String ownSession) {
+        long count = 0;
+        long sum = 0;
+        long xor = 0;
+
+        for (int i = 0; i < participants.size(); i++) {
+            Participant participant = participants.get(i);
+            if (participant.isInCall() && participant.getSessionId() != null
+                    && !participant.getSessionId().equals(ownSession)) {
+                long hash = mix(participant.getSessionId().hashCode());
+                count++;
+                sum += hash;
+                xor ^= hash;
+            }
+        }
+
+        return (count * 31 + sum) * 31 + xor;
+    }
+
+    private static long mix(long value) {
+        value ^= (value >>> 33);
+        value *= 0xff51afd7ed558ccdL;
+        value ^= (value >>> 33);
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= (value >>> 33);
+        return value;
+    }
+
+    public static class RosterDelta {
+        static final RosterDelta EMPTY = new RosterDelta(Collections.emptyList(), Collections.emptyList());
+
+        private final List<String> joined;
+        private final List<String> left;
+
+        RosterDelta(List<String> joined, List<String> left) {
+            this.joined = joined;
+            this.left = left;
+        }
+
+        public List<String> getJoined() {
+            return joined;
+        }
+
+        public List<String> getLeft() {
+            return left;
+        }
+
+        public boolean isEmpty() {
+            return joined.isEmpty() && left.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.signaling;
+
+import android.util.Log;
+
+import com.nextcloud.talk.api.NcApi;
+import com.nextcloud.talk.api.models.json.signaling.SignalingOverall;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Completable;
+import io.reactivex.Observer;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+
+/**
+ * Collects outgoing signaling messages and sends them in as few sendSignalingMessages requests
+ * as possible. Candidates are held back for a short window so that a burst of them ends up in a
+ * single request, while offers and answers flush the queue right away.
+ */
+public class SignalingMessageBatcher {
+    private static final String TAG = "SignalingMessageBatcher";
+
+    static final long FLUSH_WINDOW_MS = 50;
+    static final int MAX_BATCH_SIZE = 20;
+
+    private final NcApi ncApi;
+    private final String credentials;
+    private final String url;
+    private final Consumer<SignalingOverall> responseConsumer;
+    private final Scheduler scheduler;
+
+    private final Object lock = new Object();
+    private List<String> pendingMessages = new ArrayList<>();
+    private Disposable flushDisposable;
+    private volatile SignalingTraceRecorder signalingTraceRecorder;
+
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong requestsSent = new AtomicLong();
+
+    public SignalingMessageBatcher(NcApi ncApi, String credentials, String url,
+                                   Consumer<SignalingOverall> responseConsumer, Scheduler scheduler) {
+        this.ncApi = ncApi;
+        this.scheduler = scheduler;
+        this.credentials = credentials;
+        this.url = url;
+        this.responseConsumer = responseConsumer;
+    }
+
+    public void setSignalingTraceRecorder(SignalingTraceRecorder signalingTraceRecorder) {
+        this.signalingTraceRecorder = signalingTraceRecorder;
+    }
+
+    /**
+     * @param message          an already serialized signaling message
+     * @param flushImmediately true for messages that unblock the other side (offer, answer)
+     */
+    public void enqueue(String message, boolean flushImmediately) {
+        boolean shouldFlush;
+        synchronized (lock) {
+            pendingMessages.add(message);
+            shouldFlush = flushImmediately || pendingMessages.size() >= MAX_BATCH_SIZE;
+
+            if (!shouldFlush && flushDisposable == null) {
+                flushDisposable = Completable.timer(FLUSH_WINDOW_MS, TimeUnit.MILLISECONDS, scheduler)
+                        .subscribe(this::flush);
+            }
+        }
+
+        if (shouldFlush) {
+            flush();
+        }
+    }
+
+    public void flush() {
+        List<String> batch;
+        synchronized (lock) {
+            if (flushDisposable != null) {
+                flushDisposable.dispose();
+                flushDisposable = null;
+            }
+
+            if (pendingMessages.isEmpty()) {
+                return;
+            }
+
+            batch = pendingMessages;
+            pendingMessages = new ArrayList<>();
+        }
+
+        messagesSent.addAndGet(batch.size());
+        requestsSent.incrementAndGet();
+
+        String messages = batch.toString();
+        SignalingTraceRecorder recorder = signalingTraceRecorder;
+        if (recorder != null) {
+            recorder.recordOutbound(messages);
+        }
+
+        ncApi.sendSignalingMessages(credentials, url, messages)
+                .retry(3)
+                .subscribeOn(scheduler)
+                .subscribe(new Observer<SignalingOverall>() {
+                    @Override
+                    public void onSubscribe(Disposable d) {
+
+                    }
+
+                    @Override
+                    public void onNext(SignalingOverall signalingOverall) {
+                        try {
+                            responseConsumer.accept(signalingOverall);
+                        } catch (Exception e) {
+                            Log.d(TAG, "Failed to process the signaling response");
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        Log.d(TAG, "Failed to send " + batch.size() + " signaling messages");
+                    }
+
+                    @Override
+                    public void onComplete() {
+
+                    }
+                });
+    }
+
+    /**
+     * Drops everything that has not been sent yet, e.g. when leaving the call.
+     */
+    public void clear() {
+        synchronized (lock) {
+            if (flushDisposable != null) {
+                flushDisposable.dispose();
+                flushDisposable = null;
+            }
+            pendingMessages = new ArrayList<>();
+        }
+    }
+
+    public long getMessagesSent() {
+        return messagesSent.get();
+    }
+
+    public long getRequestsSent() {
+        return requestsSent.get();
+    }
+
+    public long getRequestsSaved() {
+        return messagesSent.get() - requestsSent.get();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.signaling;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Hands the raw body of every signaling response, pulled or returned by a send, to the
+ * {@link SignalingTraceRecorder} of the running call, so that a trace holds exactly what the server sent.
+ */
+public class SignalingTraceInterceptor implements Interceptor {
+    // signaling responses are a few KB, anything bigger is not worth keeping in memory twice
+    private static final long MAX_TRACED_BODY_BYTES = 1024 * 1024;
+
+    private volatile SignalingTraceRecorder signalingTraceRecorder;
+
+    public void setSignalingTraceRecorder(SignalingTraceRecorder signalingTraceRecorder) {
+        this.signalingTraceRecorder = signalingTraceRecorder;
+    }
+
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+
+        SignalingTraceRecorder recorder = signalingTraceRecorder;
+        if (recorder != null && response.isSuccessful()
+                && chain.request().url().encodedPath().endsWith("/signaling")) {
+            recorder.recordInbound(response.peekBody(MAX_TRACED_BODY_BYTES).string());
+        }
+
+        return response;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.signaling;
+
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes everything that goes over the signaling channel to a gzipped trace file, one record per line:
+ * <pre>
+ * &lt;ms since start&gt; TAB &lt;direction&gt; TAB &lt;json&gt;
+ * </pre>
+ * Inbound records are the raw bodies of pull and send responses as they came from the server, see
+ * {@link SignalingTraceInterceptor}, outbound records are the bodies handed to sendSignalingMessages.
+ * Traces can be fed back through the SignalingTraceReplayer of the unit tests.
+ */
+public class SignalingTraceRecorder {
+    private static final String TAG = "SignalingTraceRecorder";
+
+    static final char DIRECTION_INBOUND = '<';
+    static final char DIRECTION_OUTBOUND = '>';
+    static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final long startedAt = System.nanoTime();
+    private Writer writer;
+
+    public SignalingTraceRecorder(File traceFile) throws IOException {
+        writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(
+                new FileOutputStream(traceFile)), CHARSET));
+    }
+
+    public void recordInbound(String responseBody) {
+        record(DIRECTION_INBOUND, responseBody);
+    }
+
+    public void recordOutbound(String messages) {
+        record(DIRECTION_OUTBOUND, messages);
+    }
+
+    private synchronized void record(char direction, String payload) {
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            writer.write(Long.toString((System.nanoTime() - startedAt) / 1000000));
+            writer.write('\t');
+            writer.write(direction);
+            writer.write('\t');
+            // raw bodies may be pretty printed, a record has to stay on one line
+            writer.write(payload.replace('\n', ' ').replace('\r', ' '));
+            writer.write('\n');
+        } catch (IOException e) {
+            Log.d(TAG, "Failed to write a trace record, stopping the recording");
+            close();
+        }
+    }
+
+    public synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                Log.d(TAG, "Failed to close the trace file");
+            }
+            writer = null;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.signaling;
+
+import com.nextcloud.talk.api.models.json.signaling.SignalingOverall;
+
+import io.reactivex.Observable;
+import io.reactivex.functions.BooleanSupplier;
+
+/**
+ * Delivers inbound signaling messages for a call. Implementations decide how the pull requests are
+ * re-armed; the returned observable keeps emitting until {@code stopSupplier} returns true.
+ */
+public interface SignalingTransport {
+    /**
+     * Name of the {@link com.nextcloud.talk.api.NcApi} for everything on the call path. Its calls run on
+     * the thread they are subscribed on and its client waits longer than the server holds a long poll.
+     */
+    String NC_API_NAME = "signalingNcApi";
+
+    Observable<SignalingOverall> pullSignalingMessages(String credentials, String url,
+                                                       BooleanSupplier stopSupplier);
+}
@@ -0,0 +1,88 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.stats;
+
+import com.nextcloud.talk.webrtc.MagicPeerConnectionWrapper;
+import com.nextcloud.talk.webrtc.PeerRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Observer;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Asks every peer connection of the call for its stats at a fixed interval. The wrappers publish the
+ * resulting snapshots as {@link com.nextcloud.talk.events.PeerStatsEvent}s.
+ */
+public class CallStatsSampler {
+    static final long SAMPLE_INTERVAL_MS = 2000;
+
+    private final PeerRegistry peerRegistry;
+    private final Scheduler scheduler;
+    private Disposable samplingDisposable;
+
+    public CallStatsSampler(PeerRegistry peerRegistry, Scheduler scheduler) {
+        this.peerRegistry = peerRegistry;
+        this.scheduler = scheduler;
+    }
+
+    public synchronized void start() {
+        if (samplingDisposable != null) {
+            return;
+        }
+
+        Observable.interval(SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS, scheduler)
+                .subscribe(new Observer<Long>() {
+                    @Override
+                    public void onSubscribe(Disposable d) {
+                        samplingDisposable = d;
+                    }
+
+                    @Override
+                    public void onNext(Long tick) {
+                        for (MagicPeerConnectionWrapper magicPeerConnectionWrapper :
+                                peerRegistry.getPeerConnectionWrappers()) {
+                            magicPeerConnectionWrapper.sampleStats();
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+
+                    }
+
+                    @Override
+                    public void onComplete() {
+
+                    }
+                });
+    }
+
+    public synchronized void stop() {
+        if (samplingDisposable != null) {
+            samplingDisposable.dispose();
+            samplingDisposable = null;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.stats;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns the legacy (goog*) stats reports of one peer connection into {@link PeerStatsSnapshot}s.
+ * Counters in the reports are cumulative, so the collector keeps the previous totals around to turn
+ * them into rates. Plain Java, the reports are handed in as key/value maps.
+ */
+public class PeerStatsCollector {
+    static final String TYPE_SSRC = "ssrc";
+    static final String TYPE_CANDIDATE_PAIR = "googCandidatePair";
+    static final String TYPE_BANDWIDTH_ESTIMATION = "VideoBwe";
+
+    private final String sessionId;
+
+    private long previousTimestampMs = -1;
+    private long previousBytesReceived;
+    private long previousBytesSent;
+    private long previousPacketsReceived;
+    private long previousPacketsLost;
+
+    public PeerStatsCollector(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * @param timestampMs when the reports were taken
+     * @param reports     the reports, each with its type and its values
+     */
+    public synchronized PeerStatsSnapshot collect(long timestampMs, List<Report> reports) {
+        long bytesReceived = 0;
+        long bytesSent = 0;
+        long packetsReceived = 0;
+        long packetsLost = 0;
+        long rttMs = -1;
+        long jitterMs = -1;
+        long framesDecoded = -1;
+        long framesReceived = -1;
+        long availableSendKbps = -1;
+        long audioLevel = -1;
+
+        for (int i = 0; i < reports.size(); i++) {
+            Report report = reports.get(i);
+            Map<String, String> values = report.getValues();
+
+            if (TYPE_SSRC.equals(report.getType())) {
+                if (values.containsKey("bytesReceived")) {
+                    bytesReceived += getLong(values, "bytesReceived", 0);
+                    packetsReceived += getLong(values, "packetsReceived", 0);
+                    packetsLost += getLong(values, "packetsLost", 0);
+                    jitterMs = Math.max(jitterMs, getLong(values, "googJitterReceived", -1));
+                    audioLevel = Math.max(audioLevel, getLong(values, "audioOutputLevel", -1));
+
+                    if (values.containsKey("googFramesDecoded")) {
+                        framesDecoded = Math.max(0, framesDecoded) + getLong(values, "googFramesDecoded", 0);
+                        framesReceived = Math.max(0, framesReceived) + getLong(values, "googFramesReceived", 0);
+                    }
+                } else {
+                    bytesSent += getLong(values, "bytesSent", 0);
+                    rttMs = Math.max(rttMs, getLong(values, "googRtt", -1));
+                }
+            } else if (TYPE_CANDIDATE_PAIR.equals(report.getType())
+                    && "true".equals(values.get("googActiveConnection"))) {
+                // the transport RTT is better than the per stream one, which needs RTCP first
+                long candidatePairRtt = getLong(values, "googRtt", -1);
+                if (candidatePairRtt >= 0) {
+                    rttMs = candidatePairRtt;
+                }
+            } else if (TYPE_BANDWIDTH_ESTIMATION.equals(report.getType())) {
+                long availableSendBandwidth = getLong(values, "googAvailableSendBandwidth", -1);
+                availableSendKbps = availableSendBandwidth < 0 ? -1 : availableSendBandwidth / 1000;
+            }
+        }
+
+        long inboundKbps = -1;
+        long outboundKbps = -1;
+        double packetLossPercent = -1;
+        if (previousTimestampMs != -1 && timestampMs > previousTimestampMs) {
+            long intervalMs = timestampMs - previousTimestampMs;
+            // bytes per millisecond * 8 is kilobits per second
+            inboundKbps = Math.max(0, bytesReceived - previousBytesReceived) * 8 / intervalMs;
+            outboundKbps = Math.max(0, bytesSent - previousBytesSent) * 8 / intervalMs;
+
+            long intervalPacketsLost = Math.max(0, packetsLost - previousPacketsLost);
+            long intervalPackets = Math.max(0, packetsReceived - previousPacketsReceived) + intervalPacketsLost;
+            packetLossPercent = intervalPackets == 0 ? 0 : intervalPacketsLost * 100.0 / intervalPackets;
+        }
+
+        previousTimestampMs = timestampMs;
+        previousBytesReceived = bytesReceived;
+        previousBytesSent = bytesSent;
+        previousPacketsReceived = packetsReceived;
+        previousPacketsLost = packetsLost;
+
+        return new PeerStatsSnapshot(sessionId, timestampMs, inboundKbps, outboundKbps, rttMs, jitterMs,
+                packetLossPercent, framesDecoded, framesDecoded == -1 ? -1 :
+                Math.max(0, framesReceived - framesDecoded), availableSendKbps, audioLevel);
+    }
+
+    private static long getLong(Map<String, String> values, String key, long defaultValue) {
+        String value = values.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public static class Report {
+        private final String type;
+        private final Map<String, String> values;
+
+        public Report(String type, Map<String, String> values) {
+            this.type = type;
+            this.values = values;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public Map<String, String> getValues() {
+            return values;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.stats;
+
+import java.util.Locale;
+
+/**
+ * Call quality of a single peer connection over the last sampling interval.
+ * Values that the reports did not contain are -1.
+ */
+public class PeerStatsSnapshot {
+    private final String sessionId;
+    private final long timestampMs;
+    private final long inboundKbps;
+    private final long outboundKbps;
+    private final long rttMs;
+    private final long jitterMs;
+    private final double packetLossPercent;
+    private final long framesDecoded;
+    private final long framesDropped;
+    private final long availableSendKbps;
+    private final long audioLevel;
+
+    PeerStatsSnapshot(String sessionId, long timestampMs, long inboundKbps, long outboundKbps, long rttMs,
+                      long jitterMs, double packetLossPercent, long framesDecoded, long framesDropped,
+                      long availableSendKbps, long audioLevel) {
+        this.sessionId = sessionId;
+        this.timestampMs = timestampMs;
+        this.inboundKbps = inboundKbps;
+        this.outboundKbps = outboundKbps;
+        this.rttMs = rttMs;
+        this.jitterMs = jitterMs;
+        this.packetLossPercent = packetLossPercent;
+        this.framesDecoded = framesDecoded;
+        this.framesDropped = framesDropped;
+        this.availableSendKbps = availableSendKbps;
+        this.audioLevel = audioLevel;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public long getTimestampMs() {
+        return timestampMs;
+    }
+
+    public long getInboundKbps() {
+        return inboundKbps;
+    }
+
+    public long getOutboundKbps() {
+        return outboundKbps;
+    }
+
+    public long getRttMs() {
+        return rttMs;
+    }
+
+    public long getJitterMs() {
+        return jitterMs;
+    }
+
+    /**
+     * @return the share of inbound packets lost during the interval
+     */
+    public double getPacketLossPercent() {
+        return packetLossPercent;
+    }
+
+    public long getFramesDecoded() {
+        return framesDecoded;
+    }
+
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    /**
+     * @return the send bandwidth estimate of the congestion controller
+     */
+    public long getAvailableSendKbps() {
+        return availableSendKbps;
+    }
+
+    /**
+     * @return the level of the audio received from the peer when the reports were taken, 0 to 32767
+     */
+    public long getAudioLevel() {
+        return audioLevel;
+    }
+
+    /**
+     * @return a single CSV line, the format of the stats file log
+     */
+    public String toCsv() {
+        return String.format(Locale.US, "%d,%s,%d,%d,%d,%d,%.1f,%d,%d,%d,%d", timestampMs, sessionId, inboundKbps,
+                outboundKbps, rttMs, jitterMs, packetLossPercent, framesDecoded, framesDropped, availableSendKbps,
+                audioLevel);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "in %d kbps, out %d kbps, rtt %d ms, jitter %d ms, loss %.1f%%, "
+                        + "frames %d/%d dropped", inboundKbps, outboundKbps, rttMs, jitterMs, packetLossPercent,
+                framesDropped, framesDecoded);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.stats;
+
+import java.util.Locale;
+
+/**
+ * Splits the CPU time of the process by how many remote tiles were rendering at the time, so the cost
+ * of a single tile and with it the time saved by pausing hidden ones can be estimated at the end of a
+ * call. Plain Java, the clocks are handed in.
+ */
+public class RenderCpuMeter {
+    static final int MAX_TILES = 8;
+
+    private final long[] cpuMs = new long[MAX_TILES + 1];
+    private final long[] wallMs = new long[MAX_TILES + 1];
+
+    private int renderedTiles = -1;
+    private long lastWallMs;
+    private long lastCpuMs;
+    private long pausedTileMs;
+    private int pausedTiles;
+
+    /**
+     * @param renderedTiles tiles that draw video from now on
+     * @param pausedTiles   tiles that would draw video if they were visible
+     * @param nowWallMs     the elapsed real time
+     * @param nowCpuMs      the CPU time of the process
+     */
+    public synchronized void onTilesChanged(int renderedTiles, int pausedTiles, long nowWallMs, long nowCpuMs) {
+        account(nowWallMs, nowCpuMs);
+        this.renderedTiles = Math.min(renderedTiles, MAX_TILES);
+        this.pausedTiles = pausedTiles;
+    }
+
+    /**
+     * @return the average CPU share while the given number of tiles was rendering, -1 if never seen
+     */
+    public synchronized double getCpuPercent(int tiles) {
+        return wallMs[tiles] == 0 ? -1 : cpuMs[tiles] * 100.0 / wallMs[tiles];
+    }
+
+    /**
+     * @return the CPU time a single rendering tile costs on average, -1 if there is not enough data
+     */
+    public synchronized double getCpuPercentPerTile() {
+        double idle = getCpuPercent(0);
+        if (idle < 0) {
+            return -1;
+        }
+
+        double sum = 0;
+        int count = 0;
+        for (int tiles = 1; tiles <= MAX_TILES; tiles++) {
+            double percent = getCpuPercent(tiles);
+            if (percent >= 0) {
+                sum += (percent - idle) / tiles;
+                count++;
+            }
+        }
+        return count == 0 ? -1 : sum / count;
+    }
+
+    /**
+     * @return the estimated CPU time that paused tiles would have used, in ms
+     */
+    public synchronized long getEstimatedCpuMsSaved(long nowWallMs, long nowCpuMs) {
+        account(nowWallMs, nowCpuMs);
+        double perTile = getCpuPercentPerTile();
+        return perTile <= 0 ? 0 : Math.round(pausedTileMs * perTile / 100);
+    }
+
+    public synchronized String getReport(long nowWallMs, long nowCpuMs) {
+        long saved = getEstimatedCpuMsSaved(nowWallMs, nowCpuMs);
+        StringBuilder stringBuilder = new StringBuilder("CPU by rendered tiles:");
+        for (int tiles = 0; tiles <= MAX_TILES; tiles++) {
+            if (wallMs[tiles] > 0) {
+                stringBuilder.append(String.format(Locale.US, " %d: %.1f%% over %d s,", tiles,
+                        getCpuPercent(tiles), wallMs[tiles] / 1000));
+            }
+        }
+        return stringBuilder.append(String.format(Locale.US, " paused tiles for %d s, saving about %d ms CPU",
+                pausedTileMs / 1000, saved)).toString();
+    }
+
+    private void account(long nowWallMs, long nowCpuMs) {
+        if (renderedTiles >= 0 && nowWallMs > lastWallMs) {
+            wallMs[renderedTiles] += nowWallMs - lastWallMs;
+            cpuMs[renderedTiles] += Math.max(0, nowCpuMs - lastCpuMs);
+            pausedTileMs += pausedTiles * (nowWallMs - lastWallMs);
+        }
+        lastWallMs = nowWallMs;
+        lastCpuMs = nowCpuMs;
+    }
+}
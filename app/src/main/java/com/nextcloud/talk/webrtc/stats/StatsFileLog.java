@@ -0,0 +1,69 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.stats;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Appends snapshots as CSV lines to a log file that is rotated once it grows past
+ * {@link #MAX_FILE_SIZE}, keeping a single previous file around.
+ */
+public class StatsFileLog {
+    private static final String TAG = "StatsFileLog";
+
+    static final long MAX_FILE_SIZE = 512 * 1024;
+    static final String HEADER_LINE = "timestamp,session,inKbps,outKbps,rttMs,jitterMs,lossPercent,"
+            + "framesDecoded,framesDropped,availableSendKbps,audioLevel";
+
+    private final File file;
+    private final File previousFile;
+
+    public StatsFileLog(File directory) {
+        file = new File(directory, "call-stats.csv");
+        previousFile = new File(directory, "call-stats.1.csv");
+    }
+
+    public synchronized void append(PeerStatsSnapshot peerStatsSnapshot) {
+        if (file.length() > MAX_FILE_SIZE && (!previousFile.exists() || previousFile.delete())) {
+            if (!file.renameTo(previousFile)) {
+                Log.d(TAG, "Failed to rotate the stats log");
+            }
+        }
+
+        boolean newFile = !file.exists();
+        try (Writer writer = new FileWriter(file, true)) {
+            if (newFile) {
+                writer.write(HEADER_LINE);
+                writer.write('\n');
+            }
+            writer.write(peerStatsSnapshot.toCsv());
+            writer.write('\n');
+        } catch (IOException e) {
+            Log.d(TAG, "Failed to write to the stats log");
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.api;
+
+import com.github.aurae.retrofit2.LoganSquareConverterFactory;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+
+/**
+ * Builds an {@link NcApi} the way RestModule does, but talking to a {@link MockWebServer}.
+ */
+public class MockNcApi {
+
+    public static NcApi create(MockWebServer mockWebServer) {
+        return create(mockWebServer, new OkHttpClient());
+    }
+
+    public static NcApi create(MockWebServer mockWebServer, OkHttpClient okHttpClient) {
+        return new Retrofit.Builder()
+                .client(okHttpClient)
+                .baseUrl(mockWebServer.url("/"))
+                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+                .addConverterFactory(LoganSquareConverterFactory.create())
+                .build()
+                .create(NcApi.class);
+    }
+
+    public static String getBaseUrl(MockWebServer mockWebServer) {
+        String url = mockWebServer.url("/").toString();
+        return url.substring(0, url.length() - 1);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.api.models.json.converters;
+
+import com.bluelinelabs.logansquare.LoganSquare;
+import com.nextcloud.talk.api.models.json.participants.Participant;
+import com.nextcloud.talk.api.models.json.signaling.NCSignalingMessage;
+import com.nextcloud.talk.api.models.json.signaling.Signaling;
+import com.nextcloud.talk.api.models.json.signaling.SignalingOverall;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Allocations per decoded signaling entry of {@link SignalingDataConverter} against the old path, which
+ * parsed "data" into maps and lists, turned a message back into a string and parsed it a second time.
+ * Only that both decode the same runs with the unit tests, the comparison needs {@code -Dbenchmarks}.
+ */
+public class SignalingDataConverterBenchmark {
+    private static final String BENCHMARK_PROPERTY = "benchmarks";
+    private static final int PARTICIPANTS = 20;
+    private static final int MESSAGES = 10;
+    private static final int WARMUP_ROUNDS = 2000;
+    private static final int ROUNDS = 2000;
+
+    private static final String SIGNALING_MESSAGE = "{\"from\":\"remote-session\",\"to\":\"local-session\","
+            + "\"type\":\"candidate\",\"roomType\":\"video\",\"payload\":{\"type\":\"candidate\","
+            + "\"candidate\":{\"candidate\":\"candidate:842163049 1 udp 1677729535 192.0.2.10 52139 typ srflx "
+            + "raddr 10.0.0.2 rport 52139 generation 0 ufrag Wq2m network-cost 50\",\"sdpMid\":\"video\","
+            + "\"sdpMLineIndex\":1}}}";
+
+    private static final String RESPONSE = buildResponse();
+
+    private static String buildResponse() {
+        StringBuilder stringBuilder = new StringBuilder("{\"ocs\":{\"meta\":{\"status\":\"ok\",\"statuscode\":200},"
+                + "\"data\":[{\"type\":\"usersInRoom\",\"data\":[");
+        for (int i = 0; i < PARTICIPANTS; i++) {
+            if (i > 0) {
+                stringBuilder.append(',');
+            }
+            stringBuilder.append("{\"userId\":\"user").append(i).append("\",\"roomId\":42,\"lastPing\":1510000000,")
+                    .append("\"sessionId\":\"session").append(i).append("\",\"inCall\":").append(i % 3 != 0)
+                    .append('}');
+        }
+        stringBuilder.append("]}");
+
+        String escapedMessage = SIGNALING_MESSAGE.replace("\"", "\\\"");
+        for (int i = 0; i < MESSAGES; i++) {
+            stringBuilder.append(",{\"type\":\"message\",\"data\":\"").append(escapedMessage).append("\"}");
+        }
+
+        return stringBuilder.append("]}}").toString();
+    }
+
+    @Test
+    public void decodesLikeTheOldPath() throws Exception {
+        assertEquals(decodeTheOldWay(RESPONSE), decodeWithTheConverter(RESPONSE));
+    }
+
+    @Test
+    public void decodesWithFewerAllocationsThanTheOldPath() throws Exception {
+        Assume.assumeTrue("no -D" + BENCHMARK_PROPERTY + " given", System.getProperty(BENCHMARK_PROPERTY) != null);
+        java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        Assume.assumeTrue(allocationBean.isThreadAllocatedMemorySupported()
+                && allocationBean.isThreadAllocatedMemoryEnabled());
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            decodeTheOldWay(RESPONSE);
+            decodeWithTheConverter(RESPONSE);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        int entries = (1 + MESSAGES) * ROUNDS;
+
+        long allocatedBefore = allocationBean.getThreadAllocatedBytes(threadId);
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            decodeTheOldWay(RESPONSE);
+        }
+        long oldNanos = System.nanoTime() - startedAt;
+        long oldBytes = allocationBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        allocatedBefore = allocationBean.getThreadAllocatedBytes(threadId);
+        startedAt = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            decodeWithTheConverter(RESPONSE);
+        }
+        long converterNanos = System.nanoTime() - startedAt;
+        long converterBytes = allocationBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        assertTrue("converter: " + converterBytes / entries + " bytes and " + converterNanos / entries
+                        + " ns per entry, old path: " + oldBytes / entries + " bytes and " + oldNanos / entries + " ns",
+                converterBytes < oldBytes);
+    }
+
+    /**
+     * @return the number of participants in the call plus the number of messages, so neither path
+     * can be optimized away
+     */
+    private static int decodeWithTheConverter(String response) throws IOException {
+        int decoded = 0;
+        SignalingOverall signalingOverall = LoganSquare.parse(response, SignalingOverall.class);
+        for (Signaling signaling : signalingOverall.getOcs().getSignalings()) {
+            if ("usersInRoom".equals(signaling.getType())) {
+                for (Participant participant : signaling.getSignalingData().getUsersInRoom()) {
+                    if (participant.isInCall() && participant.getSessionId() != null) {
+                        decoded++;
+                    }
+                }
+            } else if ("video".equals(signaling.getSignalingData().getMessage().getRoomType())) {
+                decoded++;
+            }
+        }
+        return decoded;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int decodeTheOldWay(String response) throws IOException {
+        int decoded = 0;
+        Map<String, Object> overall = LoganSquare.parseMap(response, Object.class);
+        Map<String, Object> ocs = (Map<String, Object>) overall.get("ocs");
+        for (Map<String, Object> signaling : (List<Map<String, Object>>) ocs.get("data")) {
+            if ("usersInRoom".equals(signaling.get("type"))) {
+                for (HashMap<String, Object> participant : (List<HashMap<String, Object>>) signaling.get("data")) {
+                    if ((boolean) participant.get("inCall") && participant.get("sessionId") != null) {
+                        decoded++;
+                    }
+                }
+            } else {
+                NCSignalingMessage ncSignalingMessage = LoganSquare.parse(signaling.get("data").toString(),
+                        NCSignalingMessage.class);
+                if ("video".equals(ncSignalingMessage.getRoomType())) {
+                    decoded++;
+                }
+            }
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import com.nextcloud.talk.api.MockNcApi;
+import com.nextcloud.talk.api.NcApi;
+import com.nextcloud.talk.api.helpers.api.ApiHelper;
+import com.nextcloud.talk.persistence.entities.UserEntity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.HttpException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CallJoinPipelineTest {
+    private static final String ROOM_TOKEN = "k4g7z9";
+    private static final long REQUEST_DELAY_MS = 400;
+
+    private static final String SETTINGS_RESPONSE = "{\"ocs\":{\"meta\":{\"status\":\"ok\",\"statuscode\":200},"
+            + "\"data\":{\"stunservers\":[{\"url\":\"stun:stun.nextcloud.com:443\"}],"
+            + "\"turnservers\":[{\"urls\":[\"turn:turn.example.com:3478?transport=udp\","
+            + "\"turn:turn.example.com:3478?transport=tcp\"],\"username\":\"1510000000:turn\","
+            + "\"credential\":\"c2VjcmV0\"}]}}}";
+    private static final String JOIN_ROOM_RESPONSE = "{\"ocs\":{\"meta\":{\"status\":\"ok\",\"statuscode\":200},"
+            + "\"data\":{\"sessionId\":\"local-session\"}}}";
+    private static final String JOIN_CALL_RESPONSE = "{\"ocs\":{\"meta\":{\"status\":\"ok\",\"statuscode\":200},"
+            + "\"data\":[]}}";
+
+    private MockWebServer mockWebServer;
+    private IceServersCache iceServersCache;
+    private CallJoinPipeline callJoinPipeline;
+    private UserEntity userEntity;
+    private final List<String> requestedPaths = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() throws Exception {
+        mockWebServer = new MockWebServer();
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                requestedPaths.add(request.getMethod() + " " + path);
+
+                String body;
+                if (path.endsWith("/signaling/settings")) {
+                    body = SETTINGS_RESPONSE;
+                } else if (path.endsWith("/room/" + ROOM_TOKEN + "/participants/active")) {
+                    body = JOIN_ROOM_RESPONSE;
+                } else if (path.endsWith("/call/" + ROOM_TOKEN)) {
+                    body = JOIN_CALL_RESPONSE;
+                } else {
+                    return new MockResponse().setResponseCode(404);
+                }
+
+                return new MockResponse().setBody(body).setBodyDelay(REQUEST_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        });
+        mockWebServer.start();
+
+        NcApi ncApi = MockNcApi.create(mockWebServer);
+        iceServersCache = new IceServersCache(ncApi, Schedulers.io());
+        callJoinPipeline = new CallJoinPipeline(ncApi, iceServersCache, Schedulers.io());
+
+        userEntity = new UserEntity();
+        userEntity.setUsername("alice");
+        userEntity.setToken("app-password");
+        userEntity.setBaseUrl(MockNcApi.getBaseUrl(mockWebServer));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    public void fetchesTheIceServersWhileJoining() throws Exception {
+        CallJoinPipeline.JoinResult joinResult = join();
+
+        assertEquals("local-session", joinResult.getCallSession());
+        assertEquals(3, joinResult.getIceServers().size());
+        assertEquals("stun:stun.nextcloud.com:443", joinResult.getIceServers().get(0).uri);
+        assertEquals("turn:turn.example.com:3478?transport=tcp", joinResult.getIceServers().get(2).uri);
+        assertEquals("1510000000:turn", joinResult.getIceServers().get(2).username);
+
+        // the settings request runs next to joinRoom, one after the other they would be a request apart
+        Map<String, Long> stageTimings = joinResult.getStageTimings();
+        assertEquals(4, stageTimings.size());
+        assertTrue(stageTimings.toString(), Math.abs(stageTimings.get(CallJoinPipeline.STAGE_ICE_SERVERS)
+                - stageTimings.get(CallJoinPipeline.STAGE_JOIN_ROOM)) < REQUEST_DELAY_MS);
+        assertTrue(stageTimings.get(CallJoinPipeline.STAGE_ICE_SERVERS)
+                < stageTimings.get(CallJoinPipeline.STAGE_JOIN_CALL));
+        assertTrue(stageTimings.get(CallJoinPipeline.STAGE_JOIN_ROOM)
+                <= stageTimings.get(CallJoinPipeline.STAGE_JOIN_CALL));
+        assertEquals(CallJoinPipeline.STAGE_JOINED, new ArrayList<>(stageTimings.keySet()).get(3));
+        assertTrue(joinResult.getTimeToJoined() >= stageTimings.get(CallJoinPipeline.STAGE_JOIN_CALL));
+
+        assertEquals(3, mockWebServer.getRequestCount());
+        assertTrue(requestedPaths.contains("GET /ocs/v2.php/apps/spreed/api/v1/signaling/settings"));
+        assertTrue(requestedPaths.contains("POST /ocs/v2.php/apps/spreed/api/v1/room/" + ROOM_TOKEN
+                + "/participants/active"));
+        assertTrue(requestedPaths.contains("POST /ocs/v2.php/apps/spreed/api/v1/call/" + ROOM_TOKEN));
+        assertEquals(ApiHelper.getCredentials("alice", "app-password"),
+                mockWebServer.takeRequest().getHeader("Authorization"));
+    }
+
+    @Test
+    public void takesTheIceServersFromTheCacheOnTheNextJoin() throws Exception {
+        join();
+        requestedPaths.clear();
+
+        CallJoinPipeline.JoinResult joinResult = join();
+
+        assertEquals(3, joinResult.getIceServers().size());
+        assertEquals(2, requestedPaths.size());
+        assertFalse(requestedPaths.contains("GET /ocs/v2.php/apps/spreed/api/v1/signaling/settings"));
+    }
+
+    @Test
+    public void fetchesTheIceServersAgainOnceInvalidated() throws Exception {
+        join();
+        iceServersCache.invalidate(userEntity);
+        requestedPaths.clear();
+
+        join();
+
+        assertEquals(3, requestedPaths.size());
+        assertTrue(requestedPaths.contains("GET /ocs/v2.php/apps/spreed/api/v1/signaling/settings"));
+        assertEquals(2, iceServersCache.getMisses());
+    }
+
+    @Test
+    public void failsWhenTheRoomCannotBeJoined() throws Exception {
+        TestObserver<CallJoinPipeline.JoinResult> testObserver = callJoinPipeline.join(userEntity, "unknown").test();
+
+        testObserver.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        testObserver.assertNoValues();
+        testObserver.assertError(HttpException.class);
+    }
+
+    private CallJoinPipeline.JoinResult join() {
+        TestObserver<CallJoinPipeline.JoinResult> testObserver = callJoinPipeline.join(userEntity, ROOM_TOKEN).test();
+
+        testObserver.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        testObserver.assertComplete();
+        testObserver.assertValueCount(1);
+        return testObserver.values().get(0);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CaptureFormatGovernorTest {
+
+    @Test
+    public void stepsDownAsPeersJoin() {
+        assertEquals("1280x720@30", formatFor(CaptureFormatGovernor.DeviceClass.HIGH_END, 3));
+        assertEquals("960x540@30", formatFor(CaptureFormatGovernor.DeviceClass.HIGH_END, 4));
+        assertEquals("640x480@30", formatFor(CaptureFormatGovernor.DeviceClass.HIGH_END, 6));
+    }
+
+    @Test
+    public void startsLowerOnWeakerDevices() {
+        assertEquals("1280x720@30", formatFor(CaptureFormatGovernor.DeviceClass.MID_RANGE, 1));
+        assertEquals("640x480@30", formatFor(CaptureFormatGovernor.DeviceClass.MID_RANGE, 2));
+        assertEquals("640x360@24", formatFor(CaptureFormatGovernor.DeviceClass.LOW_END, 1));
+        assertEquals("480x360@20", formatFor(CaptureFormatGovernor.DeviceClass.LOW_END, 2));
+    }
+
+    @Test
+    public void fallsBackToTheLastStepWhenNothingFits() {
+        assertEquals("320x240@10", formatFor(CaptureFormatGovernor.DeviceClass.LOW_END, 10));
+    }
+
+    @Test
+    public void staysWithinTheUplink() {
+        CaptureFormatGovernor captureFormatGovernor = new CaptureFormatGovernor(
+                CaptureFormatGovernor.DeviceClass.HIGH_END);
+        captureFormatGovernor.setUplinkKbps(1200);
+        assertEquals("960x540@30", captureFormatGovernor.getCaptureFormat().toString());
+
+        captureFormatGovernor.setPeerCount(2);
+        assertEquals("640x480@30", captureFormatGovernor.update().toString());
+
+        // an unknown estimate puts no limit on the format
+        captureFormatGovernor.setUplinkKbps(0);
+        assertEquals("1280x720@30", captureFormatGovernor.update().toString());
+    }
+
+    @Test
+    public void needsHeadroomToStepUp() {
+        CaptureFormatGovernor captureFormatGovernor = new CaptureFormatGovernor(
+                CaptureFormatGovernor.DeviceClass.HIGH_END);
+        captureFormatGovernor.setUplinkKbps(700);
+        assertEquals("640x480@30", captureFormatGovernor.getCaptureFormat().toString());
+
+        // enough for 960x540 on paper, but not with the headroom on top
+        captureFormatGovernor.setUplinkKbps(1100);
+        assertNull(captureFormatGovernor.update());
+
+        captureFormatGovernor.setUplinkKbps(1250);
+        assertSame(CaptureFormatGovernor.LADDER[1], captureFormatGovernor.update());
+    }
+
+    @Test
+    public void capturesNoMoreThanTheLargestTileShows() {
+        CaptureFormatGovernor captureFormatGovernor = new CaptureFormatGovernor(
+                CaptureFormatGovernor.DeviceClass.HIGH_END);
+        captureFormatGovernor.setMaxDisplaySize(640, 360);
+        assertEquals("640x360@24", captureFormatGovernor.getCaptureFormat().toString());
+
+        // a portrait tile needs the same format
+        captureFormatGovernor.setMaxDisplaySize(360, 640);
+        assertNull(captureFormatGovernor.update());
+
+        captureFormatGovernor.setMaxDisplaySize(1920, 1080);
+        assertEquals("1280x720@30", captureFormatGovernor.update().toString());
+
+        captureFormatGovernor.setMaxDisplaySize(640, 360);
+        captureFormatGovernor.update();
+        captureFormatGovernor.setMaxDisplaySize(CaptureFormatGovernor.DISPLAY_SIZE_UNKNOWN,
+                CaptureFormatGovernor.DISPLAY_SIZE_UNKNOWN);
+        assertEquals("1280x720@30", captureFormatGovernor.update().toString());
+    }
+
+    private static String formatFor(CaptureFormatGovernor.DeviceClass deviceClass, int peerCount) {
+        CaptureFormatGovernor captureFormatGovernor = new CaptureFormatGovernor(deviceClass);
+        captureFormatGovernor.setPeerCount(peerCount);
+        return captureFormatGovernor.getCaptureFormat().toString();
+    }
+}
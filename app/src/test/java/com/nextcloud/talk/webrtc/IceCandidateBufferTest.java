@@ -0,0 +1,99 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import org.junit.Test;
+import org.webrtc.IceCandidate;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IceCandidateBufferTest {
+
+    @Test
+    public void holdsCandidatesBackUntilDrained() {
+        IceCandidateBuffer iceCandidateBuffer = new IceCandidateBuffer();
+        IceCandidate first = candidate(1);
+
+        assertFalse(iceCandidateBuffer.add(first));
+        List<IceCandidate> drained = iceCandidateBuffer.drain();
+        assertEquals(1, drained.size());
+        assertSame(first, drained.get(0));
+        assertTrue(iceCandidateBuffer.drain().isEmpty());
+
+        assertTrue(iceCandidateBuffer.add(candidate(2)));
+        assertEquals(1, iceCandidateBuffer.getBuffered());
+        assertEquals(2, iceCandidateBuffer.getApplied());
+    }
+
+    @Test
+    public void dropsCandidatesSeenBefore() {
+        IceCandidateBuffer iceCandidateBuffer = new IceCandidateBuffer();
+
+        assertFalse(iceCandidateBuffer.add(candidate(1)));
+        assertFalse(iceCandidateBuffer.add(candidate(1)));
+        assertEquals(1, iceCandidateBuffer.drain().size());
+        assertFalse(iceCandidateBuffer.add(candidate(1)));
+        assertEquals(2, iceCandidateBuffer.getDeduped());
+    }
+
+    @Test
+    public void keepsCandidatesThatArrivedBeforeTheFirstDescription() {
+        IceCandidateBuffer iceCandidateBuffer = new IceCandidateBuffer();
+        IceCandidate early = candidate(1);
+        iceCandidateBuffer.add(early);
+
+        // the answer to our offer is being applied
+        iceCandidateBuffer.reset();
+
+        List<IceCandidate> drained = iceCandidateBuffer.drain();
+        assertEquals(1, drained.size());
+        assertSame(early, drained.get(0));
+    }
+
+    @Test
+    public void buffersAgainWhileTheNextRemoteDescriptionIsApplied() {
+        IceCandidateBuffer iceCandidateBuffer = new IceCandidateBuffer();
+        iceCandidateBuffer.add(candidate(1));
+        iceCandidateBuffer.drain();
+
+        // an ICE restart brings a new offer along with candidates that must wait for it
+        iceCandidateBuffer.reset();
+        IceCandidate restarted = candidate(2);
+        assertFalse(iceCandidateBuffer.add(restarted));
+        assertFalse(iceCandidateBuffer.add(candidate(1)));
+
+        List<IceCandidate> drained = iceCandidateBuffer.drain();
+        assertEquals(1, drained.size());
+        assertSame(restarted, drained.get(0));
+        assertTrue(iceCandidateBuffer.add(candidate(3)));
+    }
+
+    private static IceCandidate candidate(int port) {
+        return new IceCandidate("audio", 0, "candidate:1 1 udp 2122260223 192.168.1.2 " + (50000 + port)
+                + " typ host generation 0");
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import com.nextcloud.talk.webrtc.sdp.MediaBandwidthProfile;
+import com.nextcloud.talk.webrtc.sdp.SdpSamples;
+import com.nextcloud.talk.webrtc.sdp.VideoCodecPolicy;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MagicWebRTCUtilsTest {
+    private static final String OPUS_FMTP = "a=fmtp:111 ";
+
+    @Test
+    public void capsEverySectionWithBothBandwidthLines() {
+        for (MediaBandwidthProfile mediaBandwidthProfile : MediaBandwidthProfile.values()) {
+            String rewritten = rewrite(SdpSamples.ANDROID_OFFER, mediaBandwidthProfile);
+
+            assertEquals(mediaBandwidthProfile.name(), Integer.toString(mediaBandwidthProfile.getAudioKbps()),
+                    sectionLines(rewritten, "audio", "b=AS:").get(0));
+            assertEquals(mediaBandwidthProfile.name(), mediaBandwidthProfile.getAudioKbps() + "000",
+                    sectionLines(rewritten, "audio", "b=TIAS:").get(0));
+            assertEquals(mediaBandwidthProfile.name(), Integer.toString(mediaBandwidthProfile.getVideoKbps()),
+                    sectionLines(rewritten, "video", "b=AS:").get(0));
+            assertEquals(mediaBandwidthProfile.name(), mediaBandwidthProfile.getVideoKbps() + "000",
+                    sectionLines(rewritten, "video", "b=TIAS:").get(0));
+            // the data channel is left alone
+            assertTrue(sectionLines(rewritten, "application", "b=").isEmpty());
+        }
+    }
+
+    @Test
+    public void writesTheBandwidthLinesRightAfterTheConnectionLine() {
+        String rewritten = rewrite(SdpSamples.ANDROID_OFFER, MediaBandwidthProfile.WIFI);
+
+        assertTrue(rewritten.contains("m=audio 9 UDP/TLS/RTP/SAVPF 111 103 104 9 102 0 8 106 105 13 110 112 113 126\r\n"
+                + "c=IN IP4 0.0.0.0\r\nb=AS:64\r\nb=TIAS:64000\r\na=rtcp:9 IN IP4 0.0.0.0\r\n"));
+    }
+
+    @Test
+    public void replacesExistingBandwidthLines() {
+        for (MediaBandwidthProfile mediaBandwidthProfile : MediaBandwidthProfile.values()) {
+            String rewritten = rewrite(SdpSamples.BROWSER_ANSWER, mediaBandwidthProfile);
+
+            List<String> audioAs = sectionLines(rewritten, "audio", "b=AS:");
+            List<String> videoTias = sectionLines(rewritten, "video", "b=TIAS:");
+            assertEquals(1, audioAs.size());
+            assertEquals(Integer.toString(mediaBandwidthProfile.getAudioKbps()), audioAs.get(0));
+            assertEquals(1, videoTias.size());
+            assertEquals(mediaBandwidthProfile.getVideoKbps() + "000", videoTias.get(0));
+            assertFalse(rewritten.contains("b=TIAS:4294967295"));
+        }
+    }
+
+    @Test
+    public void tunesAnExistingOpusFmtpLine() {
+        String rewritten = rewrite(SdpSamples.ANDROID_OFFER, MediaBandwidthProfile.WIFI);
+
+        List<String> opusFmtp = sectionLines(rewritten, "audio", OPUS_FMTP);
+        assertEquals(1, opusFmtp.size());
+        // minptime is kept and stays first, useinbandfec is updated in place
+        assertEquals("minptime=10;useinbandfec=1;usedtx=0;maxaveragebitrate=40000", opusFmtp.get(0));
+    }
+
+    @Test
+    public void addsAnOpusFmtpLineWhereThereIsNone() {
+        String rewritten = rewrite(SdpSamples.BROWSER_ANSWER, MediaBandwidthProfile.CELLULAR);
+
+        assertEquals("useinbandfec=1;usedtx=1;maxaveragebitrate=24000",
+                sectionLines(rewritten, "audio", OPUS_FMTP).get(0));
+        assertTrue(rewritten.contains("a=rtpmap:111 opus/48000/2\r\na=fmtp:111 useinbandfec=1;"));
+        // other codecs do not get one
+        assertTrue(sectionLines(rewritten, "audio", "a=fmtp:0 ").isEmpty());
+    }
+
+    @Test
+    public void setsOpusParametersPerProfile() {
+        for (MediaBandwidthProfile mediaBandwidthProfile : MediaBandwidthProfile.values()) {
+            for (String sessionDescription : new String[]{SdpSamples.ANDROID_OFFER, SdpSamples.BROWSER_ANSWER}) {
+                String opusFmtp = sectionLines(rewrite(sessionDescription, mediaBandwidthProfile), "audio",
+                        OPUS_FMTP).get(0);
+                boolean dtx = mediaBandwidthProfile != MediaBandwidthProfile.WIFI;
+
+                assertTrue(opusFmtp, opusFmtp.contains("useinbandfec=1"));
+                assertTrue(opusFmtp, opusFmtp.contains("usedtx=" + (dtx ? "1" : "0")));
+                assertEquals(opusFmtp, 1, opusFmtp.split("maxaveragebitrate=", -1).length - 1);
+            }
+        }
+
+        assertTrue(sectionLines(rewrite(SdpSamples.ANDROID_OFFER, MediaBandwidthProfile.CONSTRAINED), "audio",
+                OPUS_FMTP).get(0).endsWith("maxaveragebitrate=16000"));
+    }
+
+    @Test
+    public void isStableWhenAppliedTwice() {
+        for (MediaBandwidthProfile mediaBandwidthProfile : MediaBandwidthProfile.values()) {
+            String once = rewrite(SdpSamples.ANDROID_OFFER, mediaBandwidthProfile);
+            assertEquals(once, rewrite(once, mediaBandwidthProfile));
+        }
+    }
+
+    @Test
+    public void ordersTheVideoCodecsByThePolicy() {
+        String softwareOnly = rewrite(SdpSamples.ANDROID_OFFER, MediaBandwidthProfile.WIFI);
+        String hardwareH264 = MagicWebRTCUtils.rewriteSessionDescription(SdpSamples.ANDROID_OFFER,
+                new VideoCodecPolicy(Collections.singleton(VideoCodecPolicy.H264),
+                        Collections.<String>emptySet()), MediaBandwidthProfile.WIFI);
+
+        assertTrue(softwareOnly.contains("m=video 9 UDP/TLS/RTP/SAVPF 96 100 97 98 99 101 127 124 125\r\n"));
+        assertTrue(hardwareH264.contains("m=video 9 UDP/TLS/RTP/SAVPF 100 96 97 98 99 101 127 124 125\r\n"));
+    }
+
+    private static String rewrite(String sessionDescription, MediaBandwidthProfile mediaBandwidthProfile) {
+        return MagicWebRTCUtils.rewriteSessionDescription(sessionDescription, VideoCodecPolicy.softwareOnly(),
+                mediaBandwidthProfile);
+    }
+
+    /**
+     * @return what follows the prefix on every line of the first section of the given media type
+     */
+    private static List<String> sectionLines(String sessionDescription, String media, String prefix) {
+        List<String> values = new ArrayList<>();
+        boolean inSection = false;
+
+        for (String line : sessionDescription.split("\r\n")) {
+            if (line.startsWith("m=")) {
+                if (inSection) {
+                    break;
+                }
+                inSection = line.startsWith("m=" + media + " ");
+            } else if (inSection && line.startsWith(prefix)) {
+                values.add(line.substring(prefix.length()));
+            }
+        }
+
+        return values;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import org.junit.Test;
+import org.webrtc.VideoRenderer;
+import org.webrtc.VideoTrack;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RemoteRendererPoolTest {
+
+    @Test
+    public void reattachedTrackIsEnabledAgainAfterItWasPaused() {
+        FakeVideoTrack videoTrack = new FakeVideoTrack();
+
+        RemoteRendererPool.VideoBinding stoppedActivityBinding = newVideoBinding();
+        stoppedActivityBinding.attach(videoTrack);
+        assertTrue(stoppedActivityBinding.setVideoRendered(false));
+        assertFalse(videoTrack.enabled);
+        stoppedActivityBinding.detach();
+
+        // the recreated activity gets a fresh tile, which thinks it is rendered already
+        RemoteRendererPool.VideoBinding recreatedActivityBinding = newVideoBinding();
+        recreatedActivityBinding.attach(videoTrack);
+        assertTrue(recreatedActivityBinding.isVideoRendered());
+        assertFalse(recreatedActivityBinding.setVideoRendered(true));
+        assertTrue(videoTrack.enabled);
+    }
+
+    @Test
+    public void trackAttachedToPausedTileStaysDisabledUntilShown() {
+        FakeVideoTrack videoTrack = new FakeVideoTrack();
+        RemoteRendererPool.VideoBinding videoBinding = newVideoBinding();
+        videoBinding.setVideoRendered(false);
+
+        videoBinding.attach(videoTrack);
+        assertFalse(videoTrack.enabled);
+
+        videoBinding.setVideoRendered(true);
+        assertTrue(videoTrack.enabled);
+    }
+
+    @Test
+    public void detachedTrackIsLeftAlone() {
+        FakeVideoTrack videoTrack = new FakeVideoTrack();
+        RemoteRendererPool.VideoBinding videoBinding = newVideoBinding();
+        videoBinding.attach(videoTrack);
+        videoBinding.detach();
+
+        videoBinding.setVideoRendered(false);
+        assertTrue(videoTrack.enabled);
+    }
+
+    private static RemoteRendererPool.VideoBinding newVideoBinding() {
+        return new RemoteRendererPool.VideoBinding(frame -> {
+        }) {
+            @Override
+            VideoRenderer createVideoRenderer(VideoRenderer.Callbacks callbacks) {
+                // wraps a native renderer, which unit tests can not load
+                return null;
+            }
+        };
+    }
+
+    private static class FakeVideoTrack extends VideoTrack {
+        private boolean enabled = true;
+
+        FakeVideoTrack() {
+            super(0);
+        }
+
+        @Override
+        public boolean setEnabled(boolean enabled) {
+            this.enabled = enabled;
+            return true;
+        }
+
+        @Override
+        public void addRenderer(VideoRenderer renderer) {
+        }
+
+        @Override
+        public void removeRenderer(VideoRenderer renderer) {
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import com.nextcloud.talk.api.MockNcApi;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.observers.TestObserver;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SignalingExecutorTest {
+    private static final String SIGNALING_RESPONSE = "{\"ocs\":{\"meta\":{\"status\":\"ok\",\"statuscode\":200},"
+            + "\"data\":[]}}";
+
+    @Test
+    public void blockingNetworkCallsDoNotQueueBehindEachOther() throws Exception {
+        SignalingExecutor signalingExecutor = new SignalingExecutor();
+        // more held requests than the fixed pool has threads, e.g. a long poll, a ping and a join at once
+        int calls = SignalingExecutor.NETWORK_POOL_SIZE;
+        CountDownLatch allRunning = new CountDownLatch(calls);
+        CountDownLatch release = new CountDownLatch(1);
+
+        for (int i = 0; i < calls; i++) {
+            Completable.fromAction(() -> {
+                allRunning.countDown();
+                release.await();
+            }).subscribeOn(signalingExecutor.getNetworkScheduler()).subscribe();
+        }
+
+        try {
+            assertTrue(allRunning.await(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void networkCallsBeyondThePoolSizeWaitForAThread() throws Exception {
+        SignalingExecutor signalingExecutor = new SignalingExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch lastCallRan = new CountDownLatch(1);
+
+        for (int i = 0; i < SignalingExecutor.NETWORK_POOL_SIZE; i++) {
+            Completable.fromAction(release::await).subscribeOn(signalingExecutor.getNetworkScheduler()).subscribe();
+        }
+        Completable.fromAction(lastCallRan::countDown).subscribeOn(signalingExecutor.getNetworkScheduler())
+                .subscribe();
+
+        try {
+            assertFalse(lastCallRan.await(200, TimeUnit.MILLISECONDS));
+        } finally {
+            release.countDown();
+        }
+        assertTrue(lastCallRan.await(5, TimeUnit.SECONDS));
+        assertEquals(SignalingExecutor.NETWORK_POOL_SIZE, signalingExecutor.getThreadsCreated());
+    }
+
+    @Test
+    public void signalingCallsRunOnTheNetworkThreads() throws Exception {
+        MockWebServer mockWebServer = new MockWebServer();
+        mockWebServer.enqueue(new MockResponse().setBody(SIGNALING_RESPONSE));
+        mockWebServer.start();
+        try {
+            SignalingExecutor signalingExecutor = new SignalingExecutor();
+            TestObserver<String> testObserver = MockNcApi.create(mockWebServer)
+                    .pullSignalingMessages("credentials", MockNcApi.getBaseUrl(mockWebServer) + "/signaling")
+                    .subscribeOn(signalingExecutor.getNetworkScheduler())
+                    .map(signalingOverall -> Thread.currentThread().getName())
+                    .test();
+
+            testObserver.awaitTerminalEvent(5, TimeUnit.SECONDS);
+            testObserver.assertValueCount(1);
+            assertTrue(testObserver.values().get(0), testObserver.values().get(0).startsWith("signaling-network-"));
+        } finally {
+            mockWebServer.shutdown();
+        }
+    }
+
+    @Test
+    public void shortTasksStillRunWhileTheNetworkIsBusy() throws Exception {
+        SignalingExecutor signalingExecutor = new SignalingExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch shortTaskRan = new CountDownLatch(1);
+
+        for (int i = 0; i < SignalingExecutor.NETWORK_POOL_SIZE; i++) {
+            Completable.fromAction(release::await).subscribeOn(signalingExecutor.getNetworkScheduler()).subscribe();
+        }
+        Completable.fromAction(shortTaskRan::countDown).subscribeOn(signalingExecutor.getScheduler()).subscribe();
+
+        try {
+            assertTrue(shortTaskRan.await(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+}
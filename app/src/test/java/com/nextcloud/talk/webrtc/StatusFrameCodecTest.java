@@ -0,0 +1,144 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StatusFrameCodecTest {
+    private static final String BENCHMARK_PROPERTY = "benchmarks";
+    private static final int WARMUP_ROUNDS = 10000;
+    private static final int ROUNDS = 100000;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(StatusFrameCodec.MAX_MESSAGE_SIZE);
+
+    @Test
+    public void carriesEveryCombinationOfChangesInAFrame() {
+        Boolean[] states = {null, true, false};
+        for (Boolean audioOn : states) {
+            for (Boolean videoOn : states) {
+                StatusFrameCodec.encodeFrame(buffer, audioOn, videoOn);
+                assertEquals(StatusFrameCodec.FRAME_SIZE, buffer.remaining());
+
+                int flags = StatusFrameCodec.decodeFrame(buffer);
+                assertEquals(audioOn, StatusFrameCodec.getAudioOn(flags));
+                assertEquals(videoOn, StatusFrameCodec.getVideoOn(flags));
+            }
+        }
+    }
+
+    @Test
+    public void rejectsAnythingButAFrame() {
+        StatusFrameCodec.encodeVideoJson(buffer, true);
+        assertEquals(-1, StatusFrameCodec.decodeFrame(buffer));
+
+        assertEquals(-1, StatusFrameCodec.decodeFrame(ByteBuffer.wrap(new byte[]{0, 0})));
+        assertEquals(-1, StatusFrameCodec.decodeFrame(ByteBuffer.wrap(new byte[]{StatusFrameCodec.FRAME_MAGIC})));
+    }
+
+    @Test
+    public void writesTheMessagesWebClientsExpect() {
+        StatusFrameCodec.encodeAudioJson(buffer, true);
+        assertEquals("{\"type\":\"audioOn\"}", read(buffer));
+        StatusFrameCodec.encodeAudioJson(buffer, false);
+        assertEquals("{\"type\":\"audioOff\"}", read(buffer));
+        StatusFrameCodec.encodeVideoJson(buffer, true);
+        assertEquals("{\"type\":\"videoOn\"}", read(buffer));
+        StatusFrameCodec.encodeVideoJson(buffer, false);
+        assertEquals("{\"type\":\"videoOff\"}", read(buffer));
+    }
+
+    @Test
+    public void recognizesThePreEncodedMessages() {
+        StatusFrameCodec.encodeAudioJson(buffer, true);
+        assertEquals("audioOn", StatusFrameCodec.matchJson(buffer));
+        StatusFrameCodec.encodeAudioJson(buffer, false);
+        assertEquals("audioOff", StatusFrameCodec.matchJson(buffer));
+        StatusFrameCodec.encodeVideoJson(buffer, true);
+        assertEquals("videoOn", StatusFrameCodec.matchJson(buffer));
+        StatusFrameCodec.encodeVideoJson(buffer, false);
+        assertEquals("videoOff", StatusFrameCodec.matchJson(buffer));
+        StatusFrameCodec.encodeCapabilityJson(buffer);
+        assertEquals(StatusFrameCodec.CAPABILITY_TYPE, StatusFrameCodec.matchJson(buffer));
+
+        assertNull(StatusFrameCodec.matchJson(ByteBuffer.wrap("{\"type\":\"nickChanged\"}".getBytes())));
+        assertNull(StatusFrameCodec.matchJson(ByteBuffer.wrap("{\"type\":\"audioOn\"} ".getBytes())));
+    }
+
+    @Test
+    public void matchesFromTheBufferPosition() {
+        ByteBuffer source = ByteBuffer.wrap("xx{\"type\":\"videoOn\"}".getBytes());
+        source.position(2);
+
+        assertEquals("videoOn", StatusFrameCodec.matchJson(source));
+        assertEquals(2, source.position());
+    }
+
+    @Test
+    public void encodesAToggleWithoutAllocating() {
+        Assume.assumeTrue("no -D" + BENCHMARK_PROPERTY + " given", System.getProperty(BENCHMARK_PROPERTY) != null);
+        java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        Assume.assumeTrue(allocationBean.isThreadAllocatedMemorySupported()
+                && allocationBean.isThreadAllocatedMemoryEnabled());
+
+        int flags = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            flags += toggle(i % 2 == 0);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = allocationBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ROUNDS; i++) {
+            flags += toggle(i % 2 == 0);
+        }
+        long allocated = allocationBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        assertTrue(flags > 0);
+        assertTrue("allocated " + allocated + " bytes for " + ROUNDS + " toggles", allocated / ROUNDS == 0);
+    }
+
+    /**
+     * What a mute or unmute sends to a peer with status frames and to one without.
+     */
+    private int toggle(boolean on) {
+        StatusFrameCodec.encodeFrame(buffer, on, null);
+        int flags = StatusFrameCodec.decodeFrame(buffer);
+        StatusFrameCodec.encodeAudioJson(buffer, on);
+        return StatusFrameCodec.matchJson(buffer) == null ? 0 : flags;
+    }
+
+    private static String read(ByteBuffer source) {
+        byte[] bytes = new byte[source.remaining()];
+        source.duplicate().get(bytes);
+        return new String(bytes, Charset.forName("UTF-8"));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.sdp;
+
+/**
+ * Session descriptions in the shape the Android WebRTC library and the browsers send them.
+ */
+public class SdpSamples {
+
+    /**
+     * Offer of the Android WebRTC library for an audio and video call with a data channel.
+     */
+    public static final String ANDROID_OFFER = "v=0\r\n"
+            + "o=- 4611731400430051336 2 IN IP4 127.0.0.1\r\n"
+            + "s=-\r\n"
+            + "t=0 0\r\n"
+            + "a=group:BUNDLE audio video data\r\n"
+            + "a=msid-semantic: WMS NCMS\r\n"
+            + "m=audio 9 UDP/TLS/RTP/SAVPF 111 103 104 9 102 0 8 106 105 13 110 112 113 126\r\n"
+            + "c=IN IP4 0.0.0.0\r\n"
+            + "a=rtcp:9 IN IP4 0.0.0.0\r\n"
+            + "a=ice-ufrag:Wq2m\r\n"
+            + "a=ice-pwd:2XRI1sHjVKCTgGNlB8dbdHkL\r\n"
+            + "a=ice-options:trickle renomination\r\n"
+            + "a=fingerprint:sha-256 6B:8B:5D:EA:59:04:20:23:29:C8:87:1C:CC:87:32:BE:DD:8C:66:A5:8E:50:55:EA:8C:D3:"
+            + "B6:5C:09:5E:D6:BC\r\n"
+            + "a=setup:actpass\r\n"
+            + "a=mid:audio\r\n"
+            + "a=extmap:1 urn:ietf:params:rtp-hdrext:ssrc-audio-level\r\n"
+            + "a=sendrecv\r\n"
+            + "a=rtcp-mux\r\n"
+            + "a=rtpmap:111 opus/48000/2\r\n"
+            + "a=rtcp-fb:111 transport-cc\r\n"
+            + "a=fmtp:111 minptime=10;useinbandfec=1\r\n"
+            + "a=rtpmap:103 ISAC/16000\r\n"
+            + "a=rtpmap:104 ISAC/32000\r\n"
+            + "a=rtpmap:9 G722/8000\r\n"
+            + "a=rtpmap:102 ILBC/8000\r\n"
+            + "a=rtpmap:0 PCMU/8000\r\n"
+            + "a=rtpmap:8 PCMA/8000\r\n"
+            + "a=rtpmap:106 CN/32000\r\n"
+            + "a=rtpmap:105 CN/16000\r\n"
+            + "a=rtpmap:13 CN/8000\r\n"
+            + "a=rtpmap:110 telephone-event/48000\r\n"
+            + "a=rtpmap:112 telephone-event/32000\r\n"
+            + "a=rtpmap:113 telephone-event/16000\r\n"
+            + "a=rtpmap:126 telephone-event/8000\r\n"
+            + "a=ssrc:2939373476 cname:s3lCZXMZ1hMW7ADW\r\n"
+            + "a=ssrc:2939373476 msid:NCMS NCa0\r\n"
+            + "a=ssrc:2939373476 mslabel:NCMS\r\n"
+            + "a=ssrc:2939373476 label:NCa0\r\n"
+            + "m=video 9 UDP/TLS/RTP/SAVPF 96 97 98 99 100 101 127 124 125\r\n"
+            + "c=IN IP4 0.0.0.0\r\n"
+            + "a=rtcp:9 IN IP4 0.0.0.0\r\n"
+            + "a=ice-ufrag:Wq2m\r\n"
+            + "a=ice-pwd:2XRI1sHjVKCTgGNlB8dbdHkL\r\n"
+            + "a=ice-options:trickle renomination\r\n"
+            + "a=fingerprint:sha-256 6B:8B:5D:EA:59:04:20:23:29:C8:87:1C:CC:87:32:BE:DD:8C:66:A5:8E:50:55:EA:8C:D3:"
+            + "B6:5C:09:5E:D6:BC\r\n"
+            + "a=setup:actpass\r\n"
+            + "a=mid:video\r\n"
+            + "a=extmap:2 urn:ietf:params:rtp-hdrext:toffset\r\n"
+            + "a=extmap:3 http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time\r\n"
+            + "a=extmap:4 urn:3gpp:video-orientation\r\n"
+            + "a=extmap:5 http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01\r\n"
+            + "a=sendrecv\r\n"
+            + "a=rtcp-mux\r\n"
+            + "a=rtcp-rsize\r\n"
+            + "a=rtpmap:96 VP8/90000\r\n"
+            + "a=rtcp-fb:96 goog-remb\r\n"
+            + "a=rtcp-fb:96 transport-cc\r\n"
+            + "a=rtcp-fb:96 ccm fir\r\n"
+            + "a=rtcp-fb:96 nack\r\n"
+            + "a=rtcp-fb:96 nack pli\r\n"
+            + "a=rtpmap:97 rtx/90000\r\n"
+            + "a=fmtp:97 apt=96\r\n"
+            + "a=rtpmap:98 VP9/90000\r\n"
+            + "a=rtcp-fb:98 goog-remb\r\n"
+            + "a=rtcp-fb:98 transport-cc\r\n"
+            + "a=rtcp-fb:98 ccm fir\r\n"
+            + "a=rtcp-fb:98 nack\r\n"
+            + "a=rtcp-fb:98 nack pli\r\n"
+            + "a=rtpmap:99 rtx/90000\r\n"
+            + "a=fmtp:99 apt=98\r\n"
+            + "a=rtpmap:100 H264/90000\r\n"
+            + "a=rtcp-fb:100 goog-remb\r\n"
+            + "a=rtcp-fb:100 transport-cc\r\n"
+            + "a=rtcp-fb:100 ccm fir\r\n"
+            + "a=rtcp-fb:100 nack\r\n"
+            + "a=rtcp-fb:100 nack pli\r\n"
+            + "a=fmtp:100 level-asymmetry-allowed=1;packetization-mode=1;profile-level-id=42e01f\r\n"
+            + "a=rtpmap:101 rtx/90000\r\n"
+            + "a=fmtp:101 apt=100\r\n"
+            + "a=rtpmap:127 red/90000\r\n"
+            + "a=rtpmap:124 rtx/90000\r\n"
+            + "a=fmtp:124 apt=127\r\n"
+            + "a=rtpmap:125 ulpfec/90000\r\n"
+            + "a=ssrc-group:FID 1443186231 3722342425\r\n"
+            + "a=ssrc:1443186231 cname:s3lCZXMZ1hMW7ADW\r\n"
+            + "a=ssrc:1443186231 msid:NCMS NCv0\r\n"
+            + "a=ssrc:1443186231 mslabel:NCMS\r\n"
+            + "a=ssrc:1443186231 label:NCv0\r\n"
+            + "a=ssrc:3722342425 cname:s3lCZXMZ1hMW7ADW\r\n"
+            + "a=ssrc:3722342425 msid:NCMS NCv0\r\n"
+            + "a=ssrc:3722342425 mslabel:NCMS\r\n"
+            + "a=ssrc:3722342425 label:NCv0\r\n"
+            + "m=application 9 DTLS/SCTP 5000\r\n"
+            + "c=IN IP4 0.0.0.0\r\n"
+            + "a=ice-ufrag:Wq2m\r\n"
+            + "a=ice-pwd:2XRI1sHjVKCTgGNlB8dbdHkL\r\n"
+            + "a=ice-options:trickle renomination\r\n"
+            + "a=fingerprint:sha-256 6B:8B:5D:EA:59:04:20:23:29:C8:87:1C:CC:87:32:BE:DD:8C:66:A5:8E:50:55:EA:8C:D3:"
+            + "B6:5C:09:5E:D6:BC\r\n"
+            + "a=setup:actpass\r\n"
+            + "a=mid:data\r\n"
+            + "a=sctpmap:5000 webrtc-datachannel 1024\r\n";
+
+    /**
+     * Answer of a browser that already caps its bandwidth and sends Opus without an fmtp line.
+     */
+    public static final String BROWSER_ANSWER = "v=0\r\n"
+            + "o=mozilla...THIS_IS_SDPARTA-57.0 5025614539785735545 0 IN IP4 0.0.0.0\r\n"
+            + "s=-\r\n"
+            + "t=0 0\r\n"
+            + "a=fingerprint:sha-256 1E:41:8C:5C:59:42:D8:0C:8B:2F:9B:27:AA:40:F3:83:57:0F:D2:3E:BC:31:0C:F6:44:B5:"
+            + "0F:77:A2:7E:47:8A\r\n"
+            + "a=group:BUNDLE audio video\r\n"
+            + "a=ice-options:trickle\r\n"
+            + "a=msid-semantic:WMS *\r\n"
+            + "m=audio 9 UDP/TLS/RTP/SAVPF 111 0\r\n"
+            + "c=IN IP4 0.0.0.0\r\n"
+            + "b=AS:128\r\n"
+            + "b=TIAS:128000\r\n"
+            + "a=sendrecv\r\n"
+            + "a=ice-pwd:8c83b2cd2ba9b9a4c0f3d5f09a0c4a30\r\n"
+            + "a=ice-ufrag:3b0d6f0e\r\n"
+            + "a=mid:audio\r\n"
+            + "a=rtcp-mux\r\n"
+            + "a=rtpmap:111 opus/48000/2\r\n"
+            + "a=rtpmap:0 PCMU/8000\r\n"
+            + "a=setup:active\r\n"
+            + "a=ssrc:1995213431 cname:{3b1a2c0e-41d4-4f38-9a0c-0c4f8d55e1a9}\r\n"
+            + "m=video 9 UDP/TLS/RTP/SAVPF 96\r\n"
+            + "c=IN IP4 0.0.0.0\r\n"
+            + "b=AS:2000\r\n"
+            + "b=TIAS:4294967295\r\n"
+            + "a=sendrecv\r\n"
+            + "a=ice-pwd:8c83b2cd2ba9b9a4c0f3d5f09a0c4a30\r\n"
+            + "a=ice-ufrag:3b0d6f0e\r\n"
+            + "a=mid:video\r\n"
+            + "a=rtcp-fb:96 nack\r\n"
+            + "a=rtcp-fb:96 nack pli\r\n"
+            + "a=rtcp-fb:96 ccm fir\r\n"
+            + "a=rtcp-fb:96 goog-remb\r\n"
+            + "a=rtcp-mux\r\n"
+            + "a=rtpmap:96 VP8/90000\r\n"
+            + "a=fmtp:96 max-fs=12288;max-fr=60\r\n"
+            + "a=setup:active\r\n"
+            + "a=ssrc:2217523960 cname:{3b1a2c0e-41d4-4f38-9a0c-0c4f8d55e1a9}\r\n";
+}
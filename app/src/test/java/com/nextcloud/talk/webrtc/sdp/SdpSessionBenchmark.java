@@ -0,0 +1,168 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.sdp;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Time per description of rewriting with {@link SdpSession} against the old MagicWebRTCUtils.preferCodec,
+ * which compiled a pattern and split and joined the whole description once per rewrite. Both sides do
+ * the same work: prefer a video and an audio codec. Only that both rewrite the same runs with the unit
+ * tests, the timing needs {@code -Dbenchmarks}.
+ */
+public class SdpSessionBenchmark {
+    private static final String BENCHMARK_PROPERTY = "benchmarks";
+    private static final int WARMUP_ROUNDS = 5000;
+    private static final int ROUNDS = 5000;
+    private static final String[] DESCRIPTIONS = {SdpSamples.ANDROID_OFFER, SdpSamples.BROWSER_ANSWER};
+
+    @Test
+    public void rewritesLikeTheOldPath() {
+        for (String description : DESCRIPTIONS) {
+            assertEquals(rewriteTheOldWay(description), rewriteWithSdpSession(description));
+        }
+    }
+
+    @Test
+    public void rewritesFasterThanTheOldPath() {
+        Assume.assumeTrue("no -D" + BENCHMARK_PROPERTY + " given", System.getProperty(BENCHMARK_PROPERTY) != null);
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            for (String description : DESCRIPTIONS) {
+                rewriteTheOldWay(description);
+                rewriteWithSdpSession(description);
+            }
+        }
+
+        int rewritten = 0;
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            for (String description : DESCRIPTIONS) {
+                rewritten += rewriteTheOldWay(description).length();
+            }
+        }
+        long oldNanos = System.nanoTime() - startedAt;
+
+        startedAt = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            for (String description : DESCRIPTIONS) {
+                rewritten -= rewriteWithSdpSession(description).length();
+            }
+        }
+        long sdpSessionNanos = System.nanoTime() - startedAt;
+
+        int rewrites = ROUNDS * DESCRIPTIONS.length;
+        assertEquals(0, rewritten);
+        assertTrue("SdpSession: " + sdpSessionNanos / rewrites + " ns per description, old path: "
+                + oldNanos / rewrites + " ns", sdpSessionNanos < oldNanos);
+    }
+
+    private static String rewriteWithSdpSession(String sdpDescription) {
+        SdpSession sdpSession = SdpSession.parse(sdpDescription);
+        sdpSession.getMediaSection("video").preferCodec("VP8");
+        sdpSession.getMediaSection("audio").preferCodec("opus");
+        return sdpSession.serialize();
+    }
+
+    private static String rewriteTheOldWay(String sdpDescription) {
+        return preferCodec(preferCodec(sdpDescription, "VP8", false), "opus", true);
+    }
+
+    // MagicWebRTCUtils.preferCodec before SdpSession, minus the logging
+
+    private static String preferCodec(String sdpDescription, String codec, boolean isAudio) {
+        final String[] lines = sdpDescription.split("\r\n");
+        final int mLineIndex = findMediaDescriptionLine(isAudio, lines);
+        if (mLineIndex == -1) {
+            return sdpDescription;
+        }
+        final List<String> codecPayloadTypes = new ArrayList<String>();
+        final Pattern codecPattern = Pattern.compile("^a=rtpmap:(\\d+) " + codec + "(/\\d+)+[\r]?$");
+        for (int i = 0; i < lines.length; ++i) {
+            Matcher codecMatcher = codecPattern.matcher(lines[i]);
+            if (codecMatcher.matches()) {
+                codecPayloadTypes.add(codecMatcher.group(1));
+            }
+        }
+        if (codecPayloadTypes.isEmpty()) {
+            return sdpDescription;
+        }
+
+        final String newMLine = movePayloadTypesToFront(codecPayloadTypes, lines[mLineIndex]);
+        if (newMLine == null) {
+            return sdpDescription;
+        }
+        lines[mLineIndex] = newMLine;
+        return joinString(Arrays.asList(lines), "\r\n", true);
+    }
+
+    private static int findMediaDescriptionLine(boolean isAudio, String[] sdpLines) {
+        final String mediaDescription = isAudio ? "m=audio " : "m=video ";
+        for (int i = 0; i < sdpLines.length; ++i) {
+            if (sdpLines[i].startsWith(mediaDescription)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String movePayloadTypesToFront(List<String> preferredPayloadTypes, String mLine) {
+        final List<String> origLineParts = Arrays.asList(mLine.split(" "));
+        if (origLineParts.size() <= 3) {
+            return null;
+        }
+        final List<String> header = origLineParts.subList(0, 3);
+        final List<String> unpreferredPayloadTypes =
+                new ArrayList<String>(origLineParts.subList(3, origLineParts.size()));
+        unpreferredPayloadTypes.removeAll(preferredPayloadTypes);
+        final List<String> newLineParts = new ArrayList<String>();
+        newLineParts.addAll(header);
+        newLineParts.addAll(preferredPayloadTypes);
+        newLineParts.addAll(unpreferredPayloadTypes);
+        return joinString(newLineParts, " ", false);
+    }
+
+    private static String joinString(Iterable<? extends CharSequence> s, String delimiter, boolean delimiterAtEnd) {
+        Iterator<? extends CharSequence> iter = s.iterator();
+        if (!iter.hasNext()) {
+            return "";
+        }
+        StringBuilder buffer = new StringBuilder(iter.next());
+        while (iter.hasNext()) {
+            buffer.append(delimiter).append(iter.next());
+        }
+        if (delimiterAtEnd) {
+            buffer.append(delimiter);
+        }
+        return buffer.toString();
+    }
+}
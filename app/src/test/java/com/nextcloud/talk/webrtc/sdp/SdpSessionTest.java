@@ -0,0 +1,62 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.sdp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SdpSessionTest {
+
+    @Test
+    public void serializesAnUntouchedSessionAsItCameIn() {
+        assertEquals(SdpSamples.ANDROID_OFFER, SdpSession.parse(SdpSamples.ANDROID_OFFER).serialize());
+        assertEquals(SdpSamples.BROWSER_ANSWER, SdpSession.parse(SdpSamples.BROWSER_ANSWER).serialize());
+    }
+
+    @Test
+    public void keepsTiasValuesBeyondTheIntRange() {
+        SdpSession sdpSession = SdpSession.parse(SdpSamples.BROWSER_ANSWER);
+
+        assertEquals(2000, sdpSession.getMediaSection("video").getBandwidthLimit());
+        assertTrue(sdpSession.serialize().contains("b=TIAS:4294967295\r\n"));
+    }
+
+    @Test
+    public void movesAllPayloadTypesOfACodecToTheFront() {
+        SdpSession sdpSession = SdpSession.parse(SdpSamples.ANDROID_OFFER);
+        SdpSession.MediaSection video = sdpSession.getMediaSection("video");
+
+        assertTrue(video.preferCodec("h264"));
+        assertEquals(Arrays.asList("100", "96", "97", "98", "99", "101", "127", "124", "125"),
+                video.getPayloadTypes());
+        assertTrue(sdpSession.serialize().contains("m=video 9 UDP/TLS/RTP/SAVPF 100 96 97 98 99 101 127 124 125\r\n"));
+
+        assertFalse(video.preferCodec("AV1"));
+        assertNull(sdpSession.getMediaSection("text"));
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.signaling;
+
+import com.nextcloud.talk.api.MockNcApi;
+import com.nextcloud.talk.api.models.json.signaling.SignalingOverall;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LongPollingSignalingTransportTest {
+    private static final String SIGNALING_RESPONSE = "{\"ocs\":{\"meta\":{\"status\":\"ok\",\"statuscode\":200},"
+            + "\"data\":[{\"type\":\"message\",\"data\":\"{}\"}]}}";
+
+    private MockWebServer mockWebServer;
+    private LongPollingSignalingTransport longPollingSignalingTransport;
+    private String url;
+
+    @Before
+    public void setUp() throws Exception {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+        longPollingSignalingTransport = new LongPollingSignalingTransport(MockNcApi.create(mockWebServer),
+                Schedulers.io());
+        url = MockNcApi.getBaseUrl(mockWebServer) + "/signaling";
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    public void rearmsRightAwayWhenTheServerHoldsTheRequest() throws Exception {
+        long holdMs = LongPollingSignalingTransport.MIN_HOLD_TIME_MS + 200;
+        mockWebServer.enqueue(new MockResponse().setBody(SIGNALING_RESPONSE)
+                .setBodyDelay(holdMs, TimeUnit.MILLISECONDS));
+        mockWebServer.enqueue(new MockResponse().setBody(SIGNALING_RESPONSE)
+                .setBodyDelay(holdMs, TimeUnit.MILLISECONDS));
+
+        AtomicBoolean stop = new AtomicBoolean();
+        TestObserver<SignalingOverall> testObserver = longPollingSignalingTransport
+                .pullSignalingMessages("credentials", url, stop::get)
+                .doOnNext(signalingOverall -> stop.set(mockWebServer.getRequestCount() >= 2))
+                .test();
+
+        RecordedRequest first = mockWebServer.takeRequest(5, TimeUnit.SECONDS);
+        long firstAt = System.currentTimeMillis();
+        RecordedRequest second = mockWebServer.takeRequest(5, TimeUnit.SECONDS);
+        long gap = System.currentTimeMillis() - firstAt;
+
+        testObserver.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        testObserver.assertComplete();
+        testObserver.assertValueCount(2);
+        assertEquals("credentials", first.getHeader("Authorization"));
+        assertEquals("/signaling", second.getPath());
+        // the hold time of the first request plus a little, no polling interval on top
+        assertTrue("gap was " + gap, gap < holdMs + PollingSignalingTransport.POLLING_INTERVAL_MS / 2);
+        assertEquals(2, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    public void backsOffWhenTheServerDoesNotHoldTheRequest() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setBody(SIGNALING_RESPONSE));
+        mockWebServer.enqueue(new MockResponse().setBody(SIGNALING_RESPONSE));
+
+        AtomicBoolean stop = new AtomicBoolean();
+        TestObserver<SignalingOverall> testObserver = longPollingSignalingTransport
+                .pullSignalingMessages("credentials", url, stop::get)
+                .doOnNext(signalingOverall -> stop.set(mockWebServer.getRequestCount() >= 2))
+                .test();
+
+        mockWebServer.takeRequest(5, TimeUnit.SECONDS);
+        long firstAt = System.currentTimeMillis();
+        mockWebServer.takeRequest(5, TimeUnit.SECONDS);
+        long gap = System.currentTimeMillis() - firstAt;
+
+        testObserver.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        testObserver.assertComplete();
+        assertTrue("gap was " + gap, gap >= PollingSignalingTransport.POLLING_INTERVAL_MS
+                - LongPollingSignalingTransport.MIN_HOLD_TIME_MS);
+    }
+
+    @Test
+    public void rearmsWhenTheReadTimesOut() throws Exception {
+        OkHttpClient okHttpClient = new OkHttpClient.Builder()
+                .readTimeout(LongPollingSignalingTransport.MIN_HOLD_TIME_MS, TimeUnit.MILLISECONDS)
+                .build();
+        longPollingSignalingTransport = new LongPollingSignalingTransport(MockNcApi.create(mockWebServer,
+                okHttpClient), Schedulers.io());
+        // nothing arrived while the request was held
+        mockWebServer.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+        mockWebServer.enqueue(new MockResponse().setBody(SIGNALING_RESPONSE));
+
+        AtomicBoolean stop = new AtomicBoolean();
+        TestObserver<SignalingOverall> testObserver = longPollingSignalingTransport
+                .pullSignalingMessages("credentials", url, stop::get)
+                .doOnNext(signalingOverall -> stop.set(true))
+                .test();
+
+        testObserver.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        testObserver.assertComplete();
+        testObserver.assertValueCount(1);
+        assertEquals(2, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    public void stopsOnceTheStopSupplierSaysSo() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setBody(SIGNALING_RESPONSE)
+                .setBodyDelay(LongPollingSignalingTransport.MIN_HOLD_TIME_MS, TimeUnit.MILLISECONDS));
+        mockWebServer.enqueue(new MockResponse().setBody(SIGNALING_RESPONSE));
+
+        AtomicBoolean stop = new AtomicBoolean();
+        TestObserver<SignalingOverall> testObserver = longPollingSignalingTransport
+                .pullSignalingMessages("credentials", url, stop::get)
+                .doOnNext(signalingOverall -> stop.set(true))
+                .test();
+
+        testObserver.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        testObserver.assertComplete();
+        testObserver.assertValueCount(1);
+        assertEquals(1, testObserver.values().get(0).getOcs().getSignalings().size());
+        assertEquals(1, mockWebServer.getRequestCount());
+    }
+}
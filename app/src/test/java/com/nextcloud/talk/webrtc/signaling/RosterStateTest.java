@@ -0,0 +1,158 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.signaling;
+
+import com.nextcloud.talk.api.models.json.participants.Participant;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RosterStateTest {
+    private static final int PARTICIPANTS = 500;
+    private static final String OWN_SESSION = "session0";
+
+    private RosterState rosterState;
+    private List<Participant> roster;
+    // what the call would have as peers after applying every delta
+    private Set<String> activeSessions;
+
+    @Before
+    public void setUp() {
+        rosterState = new RosterState();
+        roster = new ArrayList<>();
+        activeSessions = new HashSet<>();
+
+        for (int i = 0; i < PARTICIPANTS; i++) {
+            // every tenth participant is in the room, but not in the call
+            roster.add(participant("session" + i, i % 10 != 9));
+        }
+    }
+
+    @Test
+    public void joinsEveryoneInTheCallButUsOnTheFirstRoster() {
+        RosterState.RosterDelta rosterDelta = update(roster);
+
+        assertEquals(PARTICIPANTS - PARTICIPANTS / 10 - 1, rosterDelta.getJoined().size());
+        assertTrue(rosterDelta.getLeft().isEmpty());
+        assertFalse(rosterDelta.getJoined().contains(OWN_SESSION));
+        assertFalse(rosterDelta.getJoined().contains("session9"));
+        assertEquals(1, rosterState.getRostersProcessed());
+    }
+
+    @Test
+    public void skipsARepeatedRosterEvenWhenReordered() {
+        update(roster);
+
+        List<Participant> reordered = new ArrayList<>(roster);
+        Collections.shuffle(reordered, new Random(42));
+        RosterState.RosterDelta rosterDelta = update(reordered);
+
+        assertTrue(rosterDelta.isEmpty());
+        assertEquals(1, rosterState.getRostersProcessed());
+        assertEquals(1, rosterState.getRostersSkipped());
+    }
+
+    @Test
+    public void reportsOnlyTheSessionsThatJoinedOrLeft() {
+        update(roster);
+
+        List<Participant> changed = new ArrayList<>(roster);
+        // two hang up, one leaves the room altogether, one who was only in the room joins the call
+        changed.set(100, participant("session100", false));
+        changed.set(200, participant("session200", false));
+        changed.remove(300);
+        changed.set(19, participant("session19", true));
+        changed.add(participant("session" + PARTICIPANTS, true));
+
+        RosterState.RosterDelta rosterDelta = update(changed);
+
+        assertEquals(setOf("session19", "session" + PARTICIPANTS), new HashSet<>(rosterDelta.getJoined()));
+        assertEquals(setOf("session100", "session200", "session300"), new HashSet<>(rosterDelta.getLeft()));
+        assertEquals(2, rosterState.getRostersProcessed());
+        assertEquals(0, rosterState.getRostersSkipped());
+    }
+
+    @Test
+    public void doesNotSkipWhenThePeersDriftedFromTheRoster() {
+        update(roster);
+
+        // a peer connection was closed locally, the same roster has to bring it back
+        activeSessions.remove("session42");
+        RosterState.RosterDelta rosterDelta = update(roster);
+
+        assertEquals(Collections.singletonList("session42"), rosterDelta.getJoined());
+        assertTrue(rosterDelta.getLeft().isEmpty());
+        assertEquals(0, rosterState.getRostersSkipped());
+    }
+
+    @Test
+    public void processesTheRosterAgainAfterAReset() {
+        update(roster);
+        rosterState.reset();
+        activeSessions.clear();
+
+        assertEquals(PARTICIPANTS - PARTICIPANTS / 10 - 1, update(roster).getJoined().size());
+        assertEquals(2, rosterState.getRostersProcessed());
+    }
+
+    @Test
+    public void fingerprintIgnoresOrderButNotMembership() {
+        List<Participant> reversed = new ArrayList<>(roster);
+        Collections.reverse(reversed);
+        List<Participant> shorter = new ArrayList<>(roster);
+        shorter.remove(1);
+
+        assertEquals(RosterState.fingerprint(roster, OWN_SESSION), RosterState.fingerprint(reversed, OWN_SESSION));
+        assertFalse(RosterState.fingerprint(roster, OWN_SESSION) == RosterState.fingerprint(shorter, OWN_SESSION));
+    }
+
+    private RosterState.RosterDelta update(List<Participant> participants) {
+        RosterState.RosterDelta rosterDelta = rosterState.update(participants, OWN_SESSION, activeSessions);
+        activeSessions.addAll(rosterDelta.getJoined());
+        activeSessions.removeAll(rosterDelta.getLeft());
+        return rosterDelta;
+    }
+
+    private static Participant participant(String sessionId, boolean inCall) {
+        Participant participant = new Participant();
+        participant.setSessionId(sessionId);
+        participant.setInCall(inCall);
+        return participant;
+    }
+
+    private static Set<String> setOf(String... sessionIds) {
+        Set<String> set = new HashSet<>();
+        Collections.addAll(set, sessionIds);
+        return set;
+    }
+}
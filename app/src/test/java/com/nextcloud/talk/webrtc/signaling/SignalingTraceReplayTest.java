@@ -0,0 +1,152 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.signaling;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.nextcloud.talk.api.MockNcApi;
+import com.nextcloud.talk.api.NcApi;
+import com.nextcloud.talk.webrtc.MagicWebRTCUtils;
+import com.nextcloud.talk.webrtc.sdp.MediaBandwidthProfile;
+import com.nextcloud.talk.webrtc.sdp.SdpSamples;
+import com.nextcloud.talk.webrtc.sdp.VideoCodecPolicy;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Records a call setup off a mock server the way a debug build does and replays it. Point the
+ * {@code signalingTrace} system property at a trace pulled from a device to replay that one instead.
+ */
+public class SignalingTraceReplayTest {
+    private static final String TRACE_PROPERTY = "signalingTrace";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MockWebServer mockWebServer;
+    private NcApi ncApi;
+    private SignalingTraceInterceptor signalingTraceInterceptor;
+
+    @Before
+    public void setUp() throws Exception {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+        signalingTraceInterceptor = new SignalingTraceInterceptor();
+        ncApi = MockNcApi.create(mockWebServer, new OkHttpClient.Builder()
+                .addInterceptor(signalingTraceInterceptor)
+                .build());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    public void recordsTheRawResponseAndReplaysItThroughTheSdpRewrite() throws Exception {
+        String rosterBody = "{\"ocs\": {\n  \"meta\": {\"status\": \"ok\", \"statuscode\": 200},\n  \"data\": [\n"
+                + "    {\"type\": \"usersInRoom\", \"data\": [\n"
+                + "      {\"sessionId\": \"local\", \"inCall\": true},\n"
+                + "      {\"sessionId\": \"remote\", \"inCall\": true},\n"
+                + "      {\"sessionId\": \"lobby\", \"inCall\": false}\n"
+                + "    ]}\n  ]\n}}\n";
+        String offerBody = "{\"ocs\":{\"meta\":{\"status\":\"ok\",\"statuscode\":200},\"data\":["
+                + "{\"type\":\"message\",\"data\":\"" + escape(offerMessage()) + "\"}]}}";
+
+        File traceFile = temporaryFolder.newFile("trace.gz");
+        SignalingTraceRecorder signalingTraceRecorder = new SignalingTraceRecorder(traceFile);
+        signalingTraceInterceptor.setSignalingTraceRecorder(signalingTraceRecorder);
+
+        String url = MockNcApi.getBaseUrl(mockWebServer) + "/ocs/v2.php/apps/spreed/api/v1/signaling";
+        for (String body : Arrays.asList(rosterBody, offerBody)) {
+            mockWebServer.enqueue(new MockResponse().setBody(body));
+            ncApi.pullSignalingMessages("credentials", url).blockingFirst();
+        }
+        signalingTraceRecorder.recordOutbound("[{\"ev\":\"message\"}]");
+        signalingTraceRecorder.close();
+
+        List<SignalingTraceReplayer.TraceRecord> traceRecords = SignalingTraceReplayer.readTrace(traceFile);
+        assertEquals(3, traceRecords.size());
+        // byte for byte what the server sent, only the line breaks are flattened
+        assertEquals(rosterBody.replace('\n', ' '), traceRecords.get(0).getPayload());
+        assertEquals(offerBody, traceRecords.get(1).getPayload());
+        assertEquals(SignalingTraceRecorder.DIRECTION_OUTBOUND, traceRecords.get(2).getDirection());
+
+        VideoCodecPolicy videoCodecPolicy = new VideoCodecPolicy(Arrays.asList(VideoCodecPolicy.H264),
+                Arrays.asList(VideoCodecPolicy.H264));
+        SignalingTraceReplayer signalingTraceReplayer = new SignalingTraceReplayer(videoCodecPolicy,
+                MediaBandwidthProfile.CELLULAR);
+        SignalingTraceReplayer.ReplayReport replayReport = signalingTraceReplayer.replay(traceRecords,
+                SignalingTraceReplayer.Pacing.MAX_SPEED);
+
+        assertEquals(2, replayReport.getSignalingMessages());
+        assertEquals(1, replayReport.getOutboundRecords());
+        // the replayer does not know our own session, so it shows up as a peer like everybody in the call
+        assertEquals(new HashSet<>(Arrays.asList("local", "remote")), signalingTraceReplayer.getActiveSessions());
+        assertEquals(1, signalingTraceReplayer.getRewrittenSessionDescriptions().size());
+
+        String rewritten = signalingTraceReplayer.getRewrittenSessionDescriptions().get(0);
+        assertEquals(MagicWebRTCUtils.rewriteSessionDescription(SdpSamples.ANDROID_OFFER, videoCodecPolicy,
+                MediaBandwidthProfile.CELLULAR), rewritten);
+        assertTrue(rewritten.contains("m=video 9 UDP/TLS/RTP/SAVPF 100 96 "));
+        assertTrue(rewritten.contains("b=AS:" + MediaBandwidthProfile.CELLULAR.getVideoKbps() + "\r\n"));
+    }
+
+    @Test
+    public void replaysATraceFromADevice() throws Exception {
+        String tracePath = System.getProperty(TRACE_PROPERTY);
+        Assume.assumeTrue("no -D" + TRACE_PROPERTY + "=<trace.gz> given", tracePath != null);
+
+        List<SignalingTraceReplayer.TraceRecord> traceRecords = SignalingTraceReplayer.readTrace(new File(tracePath));
+        SignalingTraceReplayer.ReplayReport replayReport = new SignalingTraceReplayer(
+                VideoCodecPolicy.softwareOnly(), MediaBandwidthProfile.WIFI)
+                .replay(traceRecords, SignalingTraceReplayer.Pacing.MAX_SPEED);
+
+        assertTrue(tracePath + ": " + replayReport, replayReport.getSignalingMessages() > 0);
+    }
+
+    private static String offerMessage() {
+        return "{\"from\":\"remote\",\"to\":\"local\",\"type\":\"offer\",\"roomType\":\"video\","
+                + "\"payload\":{\"type\":\"offer\",\"nick\":\"Bob\",\"sdp\":\"" + escape(SdpSamples.ANDROID_OFFER)
+                + "\"}}";
+    }
+
+    private static String escape(String value) {
+        return new String(JsonStringEncoder.getInstance().quoteAsString(value));
+    }
+}
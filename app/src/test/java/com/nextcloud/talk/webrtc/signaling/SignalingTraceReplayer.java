@@ -0,0 +1,244 @@
+/*
+ * Nextcloud Talk application
+ *
+ * @author Mario Danic
+ * Copyright (C) 2017 Mario Danic <mario@lovelyhq.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.nextcloud.talk.webrtc.signaling;
+
+import com.bluelinelabs.logansquare.LoganSquare;
+import com.nextcloud.talk.api.models.json.signaling.NCSignalingMessage;
+import com.nextcloud.talk.api.models.json.signaling.Signaling;
+import com.nextcloud.talk.api.models.json.signaling.SignalingOverall;
+import com.nextcloud.talk.webrtc.MagicWebRTCUtils;
+import com.nextcloud.talk.webrtc.sdp.MediaBandwidthProfile;
+import com.nextcloud.talk.webrtc.sdp.VideoCodecPolicy;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Plays a trace written by {@link SignalingTraceRecorder} back through the client side signaling
+ * processing: decoding, classification, roster diffing and the same SDP rewrite the call applies to
+ * remote descriptions. Nothing here touches Android or WebRTC classes, so call setup can be
+ * benchmarked on the JVM without a server.
+ */
+public class SignalingTraceReplayer {
+    private final VideoCodecPolicy videoCodecPolicy;
+    private final MediaBandwidthProfile mediaBandwidthProfile;
+    private final RosterState rosterState = new RosterState();
+    private final Set<String> activeSessions = new HashSet<>();
+    private final List<String> rewrittenSessionDescriptions = new ArrayList<>();
+
+    public SignalingTraceReplayer(VideoCodecPolicy videoCodecPolicy, MediaBandwidthProfile mediaBandwidthProfile) {
+        this.videoCodecPolicy = videoCodecPolicy;
+        this.mediaBandwidthProfile = mediaBandwidthProfile;
+    }
+
+    public static List<TraceRecord> readTrace(File traceFile) throws IOException {
+        try (InputStream inputStream = new GZIPInputStream(new FileInputStream(traceFile))) {
+            return readTrace(inputStream);
+        }
+    }
+
+    public static List<TraceRecord> readTrace(InputStream inputStream) throws IOException {
+        List<TraceRecord> traceRecords = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream,
+                SignalingTraceRecorder.CHARSET));
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int firstTab = line.indexOf('\t');
+            if (firstTab == -1 || line.length() < firstTab + 3) {
+                continue;
+            }
+            traceRecords.add(new TraceRecord(Long.parseLong(line.substring(0, firstTab)),
+                    line.charAt(firstTab + 1), line.substring(firstTab + 3)));
+        }
+
+        return traceRecords;
+    }
+
+    public ReplayReport replay(List<TraceRecord> traceRecords, Pacing pacing) throws IOException {
+        long[] latencies = new long[traceRecords.size()];
+        int latencyCount = 0;
+        int signalingMessages = 0;
+        int outboundRecords = 0;
+
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < traceRecords.size(); i++) {
+            TraceRecord traceRecord = traceRecords.get(i);
+
+            if (pacing == Pacing.WALL_CLOCK) {
+                long waitMs = traceRecord.getTimestampMs() - TimeUnit.NANOSECONDS.toMillis(
+                        System.nanoTime() - startedAt);
+                if (waitMs > 0) {
+                    try {
+                        Thread.sleep(waitMs);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+
+            if (traceRecord.getDirection() == SignalingTraceRecorder.DIRECTION_OUTBOUND) {
+                outboundRecords++;
+                continue;
+            }
+
+            long processingStartedAt = System.nanoTime();
+            signalingMessages += process(traceRecord.getPayload());
+            latencies[latencyCount++] = System.nanoTime() - processingStartedAt;
+        }
+
+        long durationNanos = System.nanoTime() - startedAt;
+        return new ReplayReport(Arrays.copyOf(latencies, latencyCount), signalingMessages, outboundRecords,
+                durationNanos);
+    }
+
+    private int process(String payload) throws IOException {
+        SignalingOverall signalingOverall = LoganSquare.parse(payload, SignalingOverall.class);
+        if (signalingOverall.getOcs() == null || signalingOverall.getOcs().getSignalings() == null) {
+            return 0;
+        }
+
+        List<Signaling> signalings = signalingOverall.getOcs().getSignalings();
+        for (int i = 0; i < signalings.size(); i++) {
+            Signaling signaling = signalings.get(i);
+
+            switch (InboundSignalingQueue.classify(signaling)) {
+                case ROSTER:
+                    RosterState.RosterDelta rosterDelta = rosterState.update(
+                            signaling.getSignalingData().getUsersInRoom(), null, activeSessions);
+                    activeSessions.addAll(rosterDelta.getJoined());
+                    activeSessions.removeAll(rosterDelta.getLeft());
+                    break;
+                case SDP:
+                    NCSignalingMessage ncSignalingMessage = signaling.getSignalingData().getMessage();
+                    activeSessions.add(ncSignalingMessage.getFrom());
+                    rewrittenSessionDescriptions.add(MagicWebRTCUtils.rewriteSessionDescription(
+                            ncSignalingMessage.getPayload().getSdp(), videoCodecPolicy, mediaBandwidthProfile));
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return signalings.size();
+    }
+
+    public Set<String> getActiveSessions() {
+        return activeSessions;
+    }
+
+    /**
+     * The remote descriptions of the trace as they would have been handed to the peer connections.
+     */
+    public List<String> getRewrittenSessionDescriptions() {
+        return rewrittenSessionDescriptions;
+    }
+
+    public enum Pacing {
+        WALL_CLOCK, MAX_SPEED
+    }
+
+    public static class TraceRecord {
+        private final long timestampMs;
+        private final char direction;
+        private final String payload;
+
+        public TraceRecord(long timestampMs, char direction, String payload) {
+            this.timestampMs = timestampMs;
+            this.direction = direction;
+            this.payload = payload;
+        }
+
+        public long getTimestampMs() {
+            return timestampMs;
+        }
+
+        public char getDirection() {
+            return direction;
+        }
+
+        public String getPayload() {
+            return payload;
+        }
+    }
+
+    public static class ReplayReport {
+        private final long[] sortedLatenciesNanos;
+        private final int signalingMessages;
+        private final int outboundRecords;
+        private final long durationNanos;
+
+        ReplayReport(long[] latenciesNanos, int signalingMessages, int outboundRecords, long durationNanos) {
+            this.sortedLatenciesNanos = latenciesNanos;
+            Arrays.sort(this.sortedLatenciesNanos);
+            this.signalingMessages = signalingMessages;
+            this.outboundRecords = outboundRecords;
+            this.durationNanos = durationNanos;
+        }
+
+        public int getSignalingMessages() {
+            return signalingMessages;
+        }
+
+        public int getOutboundRecords() {
+            return outboundRecords;
+        }
+
+        public double getMessagesPerSecond() {
+            return durationNanos == 0 ? 0 : signalingMessages * 1e9 / durationNanos;
+        }
+
+        /**
+         * Processing time of a single inbound record at the given percentile (0-100), in microseconds.
+         */
+        public long getLatencyMicros(double percentile) {
+            if (sortedLatenciesNanos.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * sortedLatenciesNanos.length) - 1;
+            index = Math.max(0, Math.min(sortedLatenciesNanos.length - 1, index));
+            return TimeUnit.NANOSECONDS.toMicros(sortedLatenciesNanos[index]);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d inbound records (%d messages), %d outbound records in %d ms, "
+                            + "%.1f messages/s, latency p50 %d us, p99 %d us, max %d us",
+                    sortedLatenciesNanos.length, signalingMessages, outboundRecords,
+                    TimeUnit.NANOSECONDS.toMillis(durationNanos), getMessagesPerSecond(),
+                    getLatencyMicros(50), getLatencyMicros(99), getLatencyMicros(100));
+        }
+    }
+}